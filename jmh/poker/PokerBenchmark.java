@@ -0,0 +1,237 @@
+package poker;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// JMH micro benchmarks for the dealing, evaluating and discarding hot paths, run with gradle jmh
+// (-Pjmh.includes=getGameValue for a subset). The gc profiler is on, so the results include the bytes allocated
+// per operation as gc.alloc.rate.norm.
+//
+// Hands are dealt from shuffled decks ahead of time, so the evaluators see the same mix of hand types as in a real
+// game rather than one hand over and over, and building the hands isn't part of the timing. Each operation takes
+// the next hand from the pool.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PokerBenchmark {
+
+	private static int HANDS = 1 << 16;  // size of the pool of pre dealt hands, a power of 2
+	private static int SHOWDOWN_PLAYERS = 6;
+	private static int HOLDEM_PLAYERS = 6;
+	private static long HOLDEM_STACK = 200;
+
+	// HANDS 7 card hands dealt from shuffled decks, the first 5 cards make the 5 card hand
+	@State(Scope.Thread)
+	public static class Hands {
+		int[][] ids = new int[HANDS][HandEvaluator.HOLDEM_HAND_SIZE];
+		HandOfCards[] hands = new HandOfCards[HANDS];
+		private int next;
+
+		@Setup
+		public void deal(){
+			DeckOfCards deck = new DeckOfCards(new SplittableRandom(42));
+			for (int i = 0; i < HANDS; i++) {
+				deck.reset();
+				deck.shuffle();
+				deck.dealNextIds(HandEvaluator.HOLDEM_HAND_SIZE, ids[i], 0);
+				hands[i] = new HandOfCards(ids[i]);
+			}
+		}
+
+		int nextIndex(){
+			return next++ & (HANDS - 1);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Decks {
+		DeckOfCards shuffleDeck;
+		DeckOfCards dealDeck;
+
+		@Setup
+		public void create(){
+			SplittableRandom random = new SplittableRandom(42);
+			shuffleDeck = new DeckOfCards(random.split());
+			dealDeck = new DeckOfCards(random.split());
+			dealDeck.shuffle();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Players {
+		SplittableRandom random = new SplittableRandom(42);
+		DeckOfCards deck;
+		PokerPlayer[] players = new PokerPlayer[HANDS / 8];  // already dealt, for choosing discards
+		private int next;
+
+		@Setup
+		public void deal(){
+			deck = new DeckOfCards(random.split());
+			DeckOfCards choosingDeck = new DeckOfCards(random.split());
+			for (int i = 0; i < players.length; i++) {
+				choosingDeck.reset();
+				choosingDeck.shuffle();
+				players[i] = new PokerPlayer(choosingDeck);
+			}
+		}
+
+		PokerPlayer nextPlayer(){
+			PokerPlayer player = players[next];
+			next = next + 1 == players.length ? 0 : next + 1;
+			return player;
+		}
+	}
+
+	// throws away what PokerPlayer.discard() prints while the benchmark runs
+	@State(Scope.Thread)
+	public static class NoConsole {
+		private PrintStream console;
+
+		@Setup
+		public void redirect(){
+			console = System.out;
+			System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		}
+
+		@TearDown
+		public void restore(){
+			System.setOut(console);
+		}
+	}
+
+	// a 6 player draw showdown, the cards of each player coming from a different pre dealt hand
+	@State(Scope.Thread)
+	public static class Showdowns {
+		ShowdownResolver resolver = new ShowdownResolver(SHOWDOWN_PLAYERS);
+		int[][] cards = new int[HANDS / SHOWDOWN_PLAYERS][SHOWDOWN_PLAYERS * HandOfCards.CARDS_PER_HAND];
+		private int next;
+
+		@Setup
+		public void deal(Hands hands){
+			for (int i = 0; i < cards.length; i++) {
+				for (int player = 0; player < SHOWDOWN_PLAYERS; player++) {
+					System.arraycopy(hands.ids[i * SHOWDOWN_PLAYERS + player], 0, cards[i], player * HandOfCards.CARDS_PER_HAND, HandOfCards.CARDS_PER_HAND);
+				}
+			}
+		}
+
+		int[] nextCards(){
+			int[] showdown = cards[next];
+			next = next + 1 == cards.length ? 0 : next + 1;
+			return showdown;
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Holdem {
+		HoldemTable table = new HoldemTable(HOLDEM_PLAYERS, 1, 2, HOLDEM_STACK);
+		SplittableRandom random = new SplittableRandom(HOLDEM_PLAYERS);
+	}
+
+	@Benchmark
+	public void shuffle(Decks decks){
+		decks.shuffleDeck.shuffle();
+	}
+
+	// deals the whole deck then resets it, the time is per card dealt
+	@Benchmark
+	public int dealNext(Decks decks){
+		PlayingCard card = decks.dealDeck.dealNext();
+		if(card == null){
+			decks.dealDeck.reset();
+			card = decks.dealDeck.dealNext();
+		}
+		return card.getId();
+	}
+
+	@Benchmark
+	public HandOfCards newHandOfCards(Hands hands){
+		return new HandOfCards(hands.ids[hands.nextIndex()]);
+	}
+
+	@Benchmark
+	public int getGameValue(Hands hands){
+		return hands.hands[hands.nextIndex()].getGameValue();
+	}
+
+	@Benchmark
+	public HandOfCards.Type getHandType(Hands hands){
+		return hands.hands[hands.nextIndex()].getHandType();
+	}
+
+	// asks for all 5 card positions, as PokerPlayer.discard does, the time is per hand
+	@Benchmark
+	public void getDiscardProbability(Hands hands, Blackhole blackhole){
+		HandOfCards hand = hands.hands[hands.nextIndex()];
+		for (int position = 0; position < HandOfCards.CARDS_PER_HAND; position++) {
+			blackhole.consume(hand.getDiscardProbability(position));
+		}
+	}
+
+	// discarded cards aren't dealt again, so a deck can't be reused for more than a few discards. This times
+	// resetting and shuffling the deck and dealing a new player as well, shuffle and newHandOfCards time those
+	// on their own
+	@Benchmark
+	public int newPlayerAndDiscard(Players players, NoConsole noConsole){
+		players.deck.reset();
+		players.deck.shuffle();
+		return new PokerPlayer(players.deck).discard();
+	}
+
+	// the same without printing, the allocation is just the new player and its hand
+	@Benchmark
+	public int newPlayerAndDiscardNoOutput(Players players){
+		players.deck.reset();
+		players.deck.shuffle();
+		return new PokerPlayer(players.deck).discard(players.random);
+	}
+
+	// choosing the cards on hands already dealt, which shouldn't allocate anything
+	@Benchmark
+	public int chooseDiscards(Players players){
+		return players.nextPlayer().chooseDiscards(players.random);
+	}
+
+	@Benchmark
+	public int evaluateSevenCards(Hands hands){
+		int[] a = hands.ids[hands.nextIndex()];
+		return HandEvaluator.evaluate(a[0], a[1], a[2], a[3], a[4], a[5], a[6]);
+	}
+
+	@Benchmark
+	public int resolveShowdown(Showdowns showdowns){
+		ShowdownResolver resolver = showdowns.resolver;
+		return resolver.resolve(showdowns.nextCards(), SHOWDOWN_PLAYERS, (1L << SHOWDOWN_PLAYERS) - 1) + resolver.getWinner(0);
+	}
+
+	// a whole hand of no limit Hold'em between 6 players taking random actions
+	@Benchmark
+	public void playHoldemHand(Holdem holdem, Blackhole blackhole){
+		HoldemTable table = holdem.table;
+		table.startHand(holdem.random);
+		while(!table.isHandOver()){
+			HoldemTable.playRandomAction(table, holdem.random);
+		}
+		for (int seat = 0; seat < HOLDEM_PLAYERS; seat++) {
+			blackhole.consume(table.getWinnings(seat));
+			table.setStack(seat, HOLDEM_STACK);
+		}
+	}
+}
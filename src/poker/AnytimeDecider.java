@@ -0,0 +1,294 @@
+package poker;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Chooses which cards to discard within a time limit, for when the bot has a fixed amount of time to act.
+//
+// The expected strength of each discard (see DrawEvaluator) is estimated by dealing random replacement cards until
+// the deadline, on a ForkJoin task for each thread of the pool, and the discard with the best estimate so far is returned along
+// with how confident we can be that it really is the best. Every discard is tried with the same replacement cards on
+// each sample, so the differences between them show up after far fewer samples than their strengths on their own.
+//
+// If a DrawEvaluator is given and has already worked out the hand, its exact answer is returned straight away.
+public class AnytimeDecider {
+
+	private static int SAMPLES_PER_BATCH = 4;  // samples between looking at the clock, about 15 us
+
+	private ForkJoinPool pool;
+	private int tasks;
+	private DrawEvaluator drawEvaluator;
+	private SplittableRandom random;
+
+	public AnytimeDecider(){
+		this(ForkJoinPool.commonPool(), null, new SplittableRandom());
+	}
+
+	// drawEvaluator may be null, random is split for each task so decisions can be repeated given the same seed
+	// and the same number of samples
+	public AnytimeDecider(ForkJoinPool pool, DrawEvaluator drawEvaluator, SplittableRandom random){
+		this.pool = pool;
+		this.tasks = pool.getParallelism();
+		this.drawEvaluator = drawEvaluator;
+		this.random = random;
+	}
+
+	// the best discard found for a hand before a deadline from System.nanoTime(), out of those discarding at
+	// most maxCardsToDiscard cards, always taking at least one sample even if the deadline has passed
+	public Decision decide(int[] cards, int maxCardsToDiscard, long deadline){
+		if(drawEvaluator != null && drawEvaluator.isCached(cards)){
+			int discardMask = drawEvaluator.getBestDiscard(cards, maxCardsToDiscard);
+			return new Decision(discardMask, drawEvaluator.getExpectedStrength(cards, discardMask), 1, 0, true);
+		}
+
+		int[] candidates = getCandidates(maxCardsToDiscard);
+		if(candidates.length == 1){
+			return new Decision(0, 0, 1, 0, false);
+		}
+
+		SampleTask[] sampleTasks = new SampleTask[tasks];
+		synchronized (random) {
+			for (int i = 0; i < tasks; i++) {
+				sampleTasks[i] = new SampleTask(cards, candidates, maxCardsToDiscard, deadline, random.split());
+			}
+		}
+		// the calling thread samples as well, so nothing waits on handing the work to the pool when it has one thread
+		for (int i = 1; i < tasks; i++) {
+			pool.execute(sampleTasks[i]);
+		}
+		sampleTasks[0].invoke();
+		for (int i = 1; i < tasks; i++) {
+			sampleTasks[i].join();
+		}
+
+		// adds up the samples from every task
+		long samples = 0;
+		double[] sums = new double[candidates.length];
+		double[] sumSquares = new double[candidates.length];
+		for (SampleTask task: sampleTasks) {
+			samples += task.samples;
+			for (int i = 0; i < candidates.length; i++) {
+				sums[i] += task.sums[i];
+				sumSquares[i] += task.sumSquares[i];
+			}
+		}
+
+		int best = 0;
+		int secondBest = 1;
+		for (int i = 1; i < candidates.length; i++) {
+			if(sums[i] > sums[best]){
+				secondBest = best;
+				best = i;
+			}else if(i != secondBest && sums[i] > sums[secondBest]){
+				secondBest = i;
+			}
+		}
+		double confidence = getConfidence(samples, sums[best], sumSquares[best], sums[secondBest], sumSquares[secondBest]);
+		return new Decision(candidates[best], sums[best] / samples, confidence, samples, false);
+	}
+
+	public Decision decide(HandOfCards hand, int maxCardsToDiscard, long deadline){
+		int[] cards = new int[HandOfCards.CARDS_PER_HAND];
+		for (int i = 0; i < cards.length; i++) {
+			cards[i] = hand.getCardId(i);
+		}
+		return decide(cards, maxCardsToDiscard, deadline);
+	}
+
+	// same as decide() with a deadline this many nanoseconds from now
+	public Decision decideWithin(HandOfCards hand, int maxCardsToDiscard, long timeBudgetNanos){
+		return decide(hand, maxCardsToDiscard, System.nanoTime() + timeBudgetNanos);
+	}
+
+	// every discard mask of at most maxCardsToDiscard cards, keeping every card first
+	private static int[] getCandidates(int maxCardsToDiscard){
+		int count = 0;
+		for (int discardMask = 0; discardMask < DrawEvaluator.DISCARDS; discardMask++) {
+			if(Integer.bitCount(discardMask) <= maxCardsToDiscard){
+				count++;
+			}
+		}
+		int[] candidates = new int[count];
+		count = 0;
+		for (int discardMask = 0; discardMask < DrawEvaluator.DISCARDS; discardMask++) {
+			if(Integer.bitCount(discardMask) <= maxCardsToDiscard){
+				candidates[count++] = discardMask;
+			}
+		}
+		return candidates;
+	}
+
+	// the chance the best discard so far really is better than the second best, from the normal approximation to
+	// the difference of their means, which treats the two as independent and so understates it, as they are sampled
+	// with the same cards
+	private static double getConfidence(long samples, double bestSum, double bestSumSquares, double secondSum, double secondSumSquares){
+		if(samples < 2){
+			return 0.5;
+		}
+		double bestMean = bestSum / samples;
+		double secondMean = secondSum / samples;
+		double bestVariance = Math.max(0, bestSumSquares / samples - bestMean * bestMean);
+		double secondVariance = Math.max(0, secondSumSquares / samples - secondMean * secondMean);
+		double standardError = Math.sqrt((bestVariance + secondVariance) / (samples - 1));
+		if(standardError == 0){
+			return bestMean > secondMean ? 1 : 0.5;
+		}
+		return normalDistribution((bestMean - secondMean) / standardError);
+	}
+
+	// standard normal cumulative distribution, from the erf approximation 7.1.26 in Abramowitz and Stegun,
+	// good to about 1e-7
+	private static double normalDistribution(double z){
+		double x = Math.abs(z) / Math.sqrt(2);
+		double t = 1 / (1 + 0.3275911 * x);
+		double erf = 1 - ((((1.061405429 * t - 1.453152027) * t + 1.421413741) * t - 0.284496736) * t + 0.254829592) * t * Math.exp(-x * x);
+		return z >= 0 ? (1 + erf) / 2 : (1 - erf) / 2;
+	}
+
+	// deals replacement cards and adds up the strength of every candidate discard with them until the deadline
+	private static class SampleTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private int[] cards;
+		private int[] candidates;
+		private int cardsToDeal;
+		private long deadline;
+		private SplittableRandom random;
+
+		private long samples;
+		private double[] sums;
+		private double[] sumSquares;
+
+		SampleTask(int[] cards, int[] candidates, int cardsToDeal, long deadline, SplittableRandom random){
+			this.cards = cards;
+			this.candidates = candidates;
+			this.cardsToDeal = cardsToDeal;
+			this.deadline = deadline;
+			this.random = random;
+			this.sums = new double[candidates.length];
+			this.sumSquares = new double[candidates.length];
+		}
+
+		protected void compute(){
+			long handMask = 0;
+			for (int card: cards) {
+				handMask |= 1L << card;
+			}
+			DeadCardDeck deck = new DeadCardDeck(handMask, random);
+			long remainingCards = deck.getRemainingCards();
+			int[] replacements = new int[cardsToDeal];
+			int[] hand = new int[HandOfCards.CARDS_PER_HAND];
+
+			do {
+				for (int batch = 0; batch < SAMPLES_PER_BATCH; batch++) {
+					// dealt in a random order, so a discard of fewer cards can take the first of them
+					deck.dealNextIds(cardsToDeal, replacements, 0);
+					deck.setRemainingCards(remainingCards);
+
+					for (int i = 0; i < candidates.length; i++) {
+						int replaced = 0;
+						for (int position = 0; position < hand.length; position++) {
+							hand[position] = (candidates[i] & (1 << position)) != 0 ? replacements[replaced++] : cards[position];
+						}
+						double strength = DrawEvaluator.getStrength(HandEvaluator.evaluate(hand[0], hand[1], hand[2], hand[3], hand[4]));
+						sums[i] += strength;
+						sumSquares[i] += strength * strength;
+					}
+				}
+				samples += SAMPLES_PER_BATCH;
+			} while(System.nanoTime() - deadline < 0);
+		}
+	}
+
+	// the discard chosen, its expected strength and the chance it is better than the next best discard
+	public static class Decision {
+		private int discardMask;
+		private double expectedStrength;
+		private double confidence;
+		private long samples;
+		private boolean exact;
+
+		Decision(int discardMask, double expectedStrength, double confidence, long samples, boolean exact){
+			this.discardMask = discardMask;
+			this.expectedStrength = expectedStrength;
+			this.confidence = confidence;
+			this.samples = samples;
+			this.exact = exact;
+		}
+
+		// bit i is set if the card at index i should be discarded
+		public int getDiscardMask(){
+			return discardMask;
+		}
+
+		// the estimated chance of beating a random hand after the draw, 0 if nothing was sampled
+		public double getExpectedStrength(){
+			return expectedStrength;
+		}
+
+		// between 0.5, when the best two discards can't be told apart, and 1
+		public double getConfidence(){
+			return confidence;
+		}
+
+		// number of sets of replacement cards tried, 0 if the answer came from a DrawEvaluator
+		public long getSamples(){
+			return samples;
+		}
+
+		// whether the answer was worked out from every possible draw rather than sampled
+		public boolean isExact(){
+			return exact;
+		}
+
+		public String toString(){
+			return String.format("discard mask %s, strength %.4f, confidence %.4f, %d samples%s", Integer.toBinaryString(discardMask),
+					expectedStrength, confidence, samples, exact ? " (exact)" : "");
+		}
+	}
+
+	// decides the same hands with longer and longer time budgets, checking against the exact answers
+	public static void main(String[] args) {
+		DrawEvaluator drawEvaluator = new DrawEvaluator();
+		AnytimeDecider decider = new AnytimeDecider(ForkJoinPool.commonPool(), null, new SplittableRandom(42));
+
+		DeckOfCards deck = new DeckOfCards();
+		HandOfCards[] hands = new HandOfCards[20];
+		for (int i = 0; i < hands.length; i++) {
+			deck.reset();
+			deck.shuffle();
+			hands[i] = new HandOfCards(deck);
+		}
+		// warms up the evaluator and the JIT
+		for (int i = 0; i < 200; i++) {
+			decider.decideWithin(hands[i % hands.length], PokerPlayer.MAX_CARDS_TO_DISCARD, 100_000);
+		}
+
+		for (long timeBudget: new long[] {100_000, 1_000_000, 10_000_000}) {
+			int correct = 0;
+			double strengthLost = 0;
+			double confidence = 0;
+			long samples = 0;
+			long worstOverrun = 0;
+			for (HandOfCards hand: hands) {
+				long startTime = System.nanoTime();
+				Decision decision = decider.decideWithin(hand, PokerPlayer.MAX_CARDS_TO_DISCARD, timeBudget);
+				worstOverrun = Math.max(worstOverrun, System.nanoTime() - startTime - timeBudget);
+				int bestDiscard = drawEvaluator.getBestDiscard(hand, PokerPlayer.MAX_CARDS_TO_DISCARD);
+				if(decision.getDiscardMask() == bestDiscard){
+					correct++;
+				}
+				strengthLost += drawEvaluator.getExpectedStrength(hand, bestDiscard) - drawEvaluator.getExpectedStrength(hand, decision.getDiscardMask());
+				confidence += decision.getConfidence();
+				samples += decision.getSamples();
+			}
+			System.out.println(String.format("%6d us: %2d/%d best, mean strength lost %.5f, mean confidence %.3f, %d samples per hand, worst overrun %d us",
+					timeBudget / 1000, correct, hands.length, strengthLost / hands.length, confidence / hands.length, samples / hands.length, worstOverrun / 1000));
+		}
+
+		// once a DrawEvaluator has a hand the exact answer comes back without sampling
+		AnytimeDecider exactDecider = new AnytimeDecider(ForkJoinPool.commonPool(), drawEvaluator, new SplittableRandom(42));
+		System.out.println(hands[0] + ": " + exactDecider.decideWithin(hands[0], PokerPlayer.MAX_CARDS_TO_DISCARD, 1_000_000));
+	}
+}
@@ -0,0 +1,205 @@
+package poker;
+
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+// A deck which keeps the cards left in it as a 52 bit mask (bit n set while card id n is in the deck) instead of
+// a shuffled array, for working out odds when some cards are already known, e.g. our hole cards and the board.
+//
+// Known (dead) cards are taken out with a single bit operation, and cards are dealt at random from whatever is
+// left without shuffling, by trying random cards until one is still in the deck or, once most of the deck has
+// gone, picking a random number r below the number of cards left and finding the r'th card still in the deck.
+// Putting cards back or starting a new sample with the same dead cards is just setting the mask again, so
+// rollouts don't need to rebuild or reshuffle a deck for every sample.
+//
+// Unlike DeckOfCards this deck isn't thread safe, each thread should have its own.
+public class DeadCardDeck {
+
+	public static long ALL_CARDS = (1L << PlayingCard.NUMBER_OF_CARDS) - 1;
+
+	private long remainingCards = ALL_CARDS;
+	private RandomGenerator random;
+
+	public DeadCardDeck(){
+		this(new SplittableRandom());
+	}
+
+	public DeadCardDeck(RandomGenerator random){
+		this.random = random;
+	}
+
+	// a deck without the given cards
+	public DeadCardDeck(long deadCards, RandomGenerator random){
+		this(random);
+		removeAll(deadCards);
+	}
+
+	// puts every card back in the deck
+	public void reset(){
+		remainingCards = ALL_CARDS;
+	}
+
+	public long getRemainingCards(){
+		return remainingCards;
+	}
+
+	// makes the deck hold exactly the cards in the mask, e.g. to go back to the deck before a rollout
+	public void setRemainingCards(long remainingCards){
+		this.remainingCards = remainingCards & ALL_CARDS;
+	}
+
+	public int getNumberOfCardsLeft(){
+		return Long.bitCount(remainingCards);
+	}
+
+	public boolean contains(int id){
+		return (remainingCards & (1L << id)) != 0;
+	}
+
+	// takes a known card out of the deck, returns false if it wasn't in the deck
+	public boolean remove(int id){
+		long bit = 1L << id;
+		boolean removed = (remainingCards & bit) != 0;
+		remainingCards &= ~bit;
+		return removed;
+	}
+
+	public boolean remove(PlayingCard card){
+		return remove(card.getId());
+	}
+
+	public void removeAll(long cards){
+		remainingCards &= ~cards;
+	}
+
+	public void returnCard(int id){
+		remainingCards |= 1L << id;
+	}
+
+	public void returnCards(long cards){
+		remainingCards |= cards & ALL_CARDS;
+	}
+
+	// deals a card at random from the cards left, or NO_CARD if the deck is empty
+	public int dealNextId(){
+		int id = sample(random);
+		if(id != PlayingCard.NO_CARD){
+			remainingCards &= ~(1L << id);
+		}
+		return id;
+	}
+
+	public PlayingCard dealNext(){
+		int id = dealNextId();
+		return id == PlayingCard.NO_CARD ? null : PlayingCard.getCard(id);
+	}
+
+	// deals n cards at random into ids from offset onwards, returns n, or 0 if there aren't n cards left
+	public int dealNextIds(int n, int[] ids, int offset){
+		if(n > getNumberOfCardsLeft()){
+			return 0;
+		}
+		for (int i = 0; i < n; i++) {
+			ids[offset + i] = dealNextId();
+		}
+		return n;
+	}
+
+	// a card picked at random from those left, without taking it out of the deck, NO_CARD if the deck is empty
+	public int sample(RandomGenerator random){
+		int cardsLeft = Long.bitCount(remainingCards);
+		if(cardsLeft == 0){
+			return PlayingCard.NO_CARD;
+		}
+		return pick(remainingCards, cardsLeft, random);
+	}
+
+	// k different cards picked at random from those left, as a card mask, without taking them out of the deck.
+	// Every set of k cards is equally likely
+	public long sample(int k, RandomGenerator random){
+		long cards = remainingCards;
+		int cardsLeft = Long.bitCount(cards);
+		if(k > cardsLeft){
+			throw new IllegalArgumentException("Can't pick " + k + " cards from " + cardsLeft);
+		}
+		long picked = 0;
+		for (int i = 0; i < k; i++) {
+			long bit = 1L << pick(cards, cardsLeft - i, random);
+			picked |= bit;
+			cards &= ~bit;
+		}
+		return picked;
+	}
+
+	public long sample(int k){
+		return sample(k, random);
+	}
+
+	// a card picked at random from the mask, which has cardsLeft cards in it. While at least half the deck is
+	// left, a random card is tried until it is one in the mask, which takes less than 2 tries on average and
+	// is quicker than finding the r'th card
+	private static int pick(long cards, int cardsLeft, RandomGenerator random){
+		if(cardsLeft * 2 >= PlayingCard.NUMBER_OF_CARDS){
+			int id;
+			do {
+				id = random.nextInt(PlayingCard.NUMBER_OF_CARDS);
+			} while((cards & (1L << id)) == 0);
+			return id;
+		}
+		return selectBit(cards, random.nextInt(cardsLeft));
+	}
+
+	// position of the r'th (from 0) set bit of the mask, found by halving the mask with bit counts, r must be
+	// less than the number of bits set
+	static int selectBit(long mask, int r){
+		int position = 0;
+		for (int width = 32; width > 0; width >>>= 1) {
+			long lowHalf = mask & ((1L << width) - 1);
+			int count = Long.bitCount(lowHalf);
+			if(r >= count){
+				r -= count;
+				mask >>>= width;
+				position += width;
+			}else{
+				mask = lowHalf;
+			}
+		}
+		return position;
+	}
+
+	public static void main(String[] args) {
+		// takes out the Aces and checks the rest are dealt once each
+		DeadCardDeck deck = new DeadCardDeck(new SplittableRandom(1));
+		for (char suit: new char[]{PlayingCard.HEARTS, PlayingCard.DIAMONDS, PlayingCard.SPADES, PlayingCard.CLUBS}) {
+			deck.remove(PlayingCard.getCard("A", suit));
+		}
+		long dealt = 0;
+		int count = 0;
+		PlayingCard card;
+		while((card = deck.dealNext()) != null){
+			if((dealt & (1L << card.getId())) != 0 || card.getType().equals("A")){
+				System.out.println("Dealt " + card + " twice or after taking it out");
+			}
+			dealt |= 1L << card.getId();
+			count++;
+		}
+		System.out.println(count + " cards dealt after taking out the Aces");
+
+		// every card should come up about as often when sampling 5 cards from 47
+		deck.reset();
+		deck.removeAll(0x1FL);
+		int[] counts = new int[PlayingCard.NUMBER_OF_CARDS];
+		int samples = 1000000;
+		for (int i = 0; i < samples; i++) {
+			for (long cards = deck.sample(5); cards != 0; cards &= cards - 1) {
+				counts[Long.numberOfTrailingZeros(cards)]++;
+			}
+		}
+		int min = Integer.MAX_VALUE, max = 0;
+		for (int id = 5; id < PlayingCard.NUMBER_OF_CARDS; id++) {
+			min = Math.min(min, counts[id]);
+			max = Math.max(max, counts[id]);
+		}
+		System.out.println("each card sampled between " + min + " and " + max + " times, expected " + samples * 5 / 47);
+	}
+}
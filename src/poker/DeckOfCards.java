@@ -1,72 +1,205 @@
 
 package poker;
 
-import java.util.ArrayList;																					  
-import java.util.Random;																					  	
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.random.RandomGenerator;
 
 public class DeckOfCards {
-	private char[] suits = {PlayingCard.CLUBS, PlayingCard.DIAMONDS, PlayingCard.HEARTS, PlayingCard.SPADES}; // array to hold each suit. 
-    private String[] types = {"A", "2", "3", "4", "5", "6", "7", "8", "9", "10", "J", "Q", "K"};			  // array to hold type e.g. A for Ace.
+    public int DECK_SIZE = PlayingCard.NUMBER_OF_CARDS;
     
-    public int DECK_SIZE = 52;
-    
-	private PlayingCard[] deck = new PlayingCard[DECK_SIZE]; 														  // array to store the deck of cards.
-	private int nextCardIndex = deck.length - 1;									                          // index variable to keep track of next card to be dealt, initially set to last card in array	
-	private ArrayList<PlayingCard> discardedCards = new ArrayList<PlayingCard>(); 							  // ArrayList to hold discarded cards
+	private int[] deck = new int[DECK_SIZE]; 																  // array to store the ids of the cards in the deck.
+	private AtomicInteger nextCardIndex = new AtomicInteger(deck.length - 1);								  // index of the next card to be dealt, initially set to last card in array	
+	private AtomicLong discardedCards = new AtomicLong(); 													  // bit mask of discarded card ids, bit n is set when card n is returned
+	private RandomGenerator random;																			  // random number generator used to shuffle the deck
 	
 	
+	// the deck holds card ids rather than cards, the cards themselves are the shared instances from PlayingCard.getCard()
+	//
+	// dealing and returning cards are lock free, so several players on different threads can share a deck,
+	// each card is dealt to exactly one of them. Shuffling and resetting are not, they should only be done
+	// while no other thread is using the deck
 	public DeckOfCards(){ 										//Constructor
-		int counter = 0;										
-	    
-	    for (int i = 0; i < suits.length; i++){
-	    	for	(int j = 0; j < types.length; j++){
-	    		int gameValue = j+1; 					
-	    		if (types[j] == "A" ){							// if statement for when encountering "A" in String array types
-	    			gameValue = 14;								// assign the value of 14 to "A" (OTHERWISE "A" would be assigned the value of 1)
-	    		}
-	    		PlayingCard card = new PlayingCard(types[j], suits[i],j+1 ,gameValue);
-	    		deck[counter++] = card;   			   		
-	    	}
+		this(new SplittableRandom());
+	}
+	
+	// constructor which shuffles with a seeded generator, so the same seed always gives the same sequence of decks
+	public DeckOfCards(long seed){
+		this(new SplittableRandom(seed));
+	}
+	
+	// constructor which shuffles with the given generator, e.g. a stream split from another SplittableRandom,
+	// so that each simulation thread can have its own deck and its own independent random numbers.
+	// the generator is not shared safely between threads, so each thread needs its own
+	public DeckOfCards(RandomGenerator random){
+		this.random = random;
+	    for (int id = 0; id < deck.length; id++){
+	    	deck[id] = id;
 	    }	
 	}
 	
+	public RandomGenerator getRandom(){
+		return random;
+	}
+	
+	public void setRandom(RandomGenerator random){
+		this.random = random;
+	}
+	
 	public void shuffle(){										
-		Random random = new Random();							
-		for(int i = 0; i < deck.length * deck.length; i++){		
-			
-			// this code randomly chooses two cards from the deck and swaps their position
-			int index1 = random.nextInt(deck.length);			
-			int index2 = random.nextInt(deck.length);			
-			PlayingCard card1 = deck[index1];						
-			PlayingCard card2 = deck[index2];						
-			deck[index1] = card2;								
-			deck[index2] = card1;								
+		shuffle(random);
+	}
+	
+	// Fisher-Yates shuffle, goes down the deck swapping each card with a random card at or below it,
+	// which gives every order of the deck the same chance with one random number per card
+	public void shuffle(RandomGenerator random){
+		long startTime = PokerMetrics.start();
+		PokerEvents.ShuffleEvent event = new PokerEvents.ShuffleEvent();
+		event.begin();
+		for(int i = deck.length - 1; i > 0; i--){
+			int j = random.nextInt(i + 1);
+			int card = deck[i];
+			deck[i] = deck[j];
+			deck[j] = card;
+		}
+		PokerMetrics.SHUFFLE.stop(startTime);
+		if(event.shouldCommit()){
+			event.cards = deck.length;
+			event.commit();
 		}
 	}
 
 	// this method resets the deck to its original form, by setting the next card index to the 
-	// last card in the deck, it then creates a new discardedCards array list to remove any cards that were there
+	// last card in the deck, it then clears the discarded cards
 	public void reset(){										
-		nextCardIndex = deck.length-1;							
-		discardedCards = new ArrayList <PlayingCard>();			
+		discardedCards.set(0);			
+		nextCardIndex.set(deck.length-1);							
 	}
     	
 	// deals next card from the deck based on the nextCardIndex pointer,
 	// then decrements the pointer, original card remains in deck array but can't be dealt again
 	// includes a check that pointer has not gone below zero, returning null if it has
-	public synchronized PlayingCard dealNext(){								
-		if(nextCardIndex < 0){									
+	public PlayingCard dealNext(){								
+		int id = dealNextId();
+		if(id == PlayingCard.NO_CARD){									
 			return null;										
 		}else{													
-			return deck[nextCardIndex--];						
+			return PlayingCard.getCard(id);						
+		}
+	}
+	
+	// same as dealNext() but deals the card id, returns PlayingCard.NO_CARD when there are no cards left
+	public int dealNextId(){
+		int index = claimCards(1);
+		if(index < 0){
+			return PlayingCard.NO_CARD;
+		}else{
+			return deck[index];
+		}
+	}
+	
+	// deals the next n cards as a block, either all n cards are dealt or none are,
+	// returns null if there are less than n cards left, and an empty array for 0 cards
+	public PlayingCard[] dealNext(int n){
+		checkNumberOfCards(n);
+		if(n == 0){
+			return new PlayingCard[0];
+		}
+		int index = claimCards(n);
+		if(index < 0){
+			return null;
+		}
+		PlayingCard[] cards = new PlayingCard[n];
+		for(int i = 0; i < n; i++){
+			cards[i] = PlayingCard.getCard(deck[index - i]);
+		}
+		return cards;
+	}
+	
+	// same as dealNext(n) but writes the card ids into the array given, starting at offset,
+	// returns the number of cards dealt, n or 0 if there are less than n cards left
+	public int dealNextIds(int n, int[] ids, int offset){
+		checkNumberOfCards(n);
+		if(n == 0){
+			return 0;
+		}
+		int index = claimCards(n);
+		if(index < 0){
+			return 0;
+		}
+		for(int i = 0; i < n; i++){
+			ids[offset + i] = deck[index - i];
+		}
+		return n;
+	}
+	
+	// a negative n would move the pointer back up and deal the same cards again
+	private static void checkNumberOfCards(int n){
+		if(n < 0){
+			throw new IllegalArgumentException("Can't deal " + n + " cards");
 		}
 	}
+	
+	// moves the nextCardIndex pointer down by n with a single compare and set, retrying if another thread
+	// dealt in between, returns the index of the first of the n cards claimed or -1 if there are not enough left
+	// this is where threads sharing a deck wait on each other, so it is what the deal metrics time
+	private int claimCards(int n){
+		long startTime = PokerMetrics.start();
+		PokerEvents.DealEvent event = new PokerEvents.DealEvent();
+		event.begin();
+		while(true){
+			int index = nextCardIndex.get();
+			if(index - n + 1 < 0){
+				PokerMetrics.DEAL.stop(startTime);
+				commitDealEvent(event, 0, index + 1);
+				return -1;
+			}
+			if(nextCardIndex.compareAndSet(index, index - n)){
+				PokerMetrics.DEAL.stop(startTime);
+				commitDealEvent(event, n, index - n + 1);
+				return index;
+			}
+		}
+	}
+	
+	private static void commitDealEvent(PokerEvents.DealEvent event, int cardsDealt, int cardsLeft){
+		if(event.shouldCommit()){
+			event.cardsDealt = cardsDealt;
+			event.cardsLeft = cardsLeft;
+			event.commit();
+		}
+	}
+	
+	public int getNumberOfCardsLeft(){
+		return nextCardIndex.get() + 1;
+	}
 
-	// when a card is returned, it is stored in the discardedCards array list
+	// when a card is returned, its bit is set in the discardedCards mask
 	public void returnCard(PlayingCard discarded){	
 		if(discarded != null){
-			discardedCards.add(discarded);	
+			returnCard(discarded.getId());	
+		}
+	}
+	
+	public void returnCard(int id){
+		if(id < 0 || id >= PlayingCard.NUMBER_OF_CARDS){
+			throw new IllegalArgumentException("Not a card id: " + id);
 		}
+		long bit = 1L << id;
+		long discarded;
+		do {
+			discarded = discardedCards.get();
+		} while(!discardedCards.compareAndSet(discarded, discarded | bit));
+	}
+	
+	// bit mask of the ids of cards returned since the last reset
+	public long getDiscardedCards(){
+		return discardedCards.get();
+	}
+	
+	public int getNumberOfDiscardedCards(){
+		return Long.bitCount(discardedCards.get());
 	}
 
 	public static void main(String[] args) {					
@@ -117,7 +250,7 @@ public class DeckOfCards {
 			PlayingCard card = deckOfCards.dealNext();
 			
 			if(card != null){									
-				if(card.toString() == testCard.toString()){			// checks is the card the same as our test card
+				if(card == testCard){								// checks is the card the same as our test card (there is only one instance of each card)
 					found = true;									// if it is we set boolean to true	
 				}				
 			}else{													
@@ -133,6 +266,39 @@ public class DeckOfCards {
 			// otherwise we didn't deal discarded card again, which is what we want
 			System.out.println("Success: Discarded card not dealt again ");		
 		}
+		
+		// Now we test dealing from several threads at once, each thread deals blocks of cards until the deck 
+		// is empty and the ids are recorded in a shared mask, every card should be dealt to exactly one thread
+		DeckOfCards sharedDeck = new DeckOfCards();
+		sharedDeck.shuffle();
+		AtomicLong dealtCards = new AtomicLong();
+		AtomicInteger duplicates = new AtomicInteger();
+		Thread[] threads = new Thread[4];
+		for(int t = 0; t < threads.length; t++){
+			final int blockSize = t + 1;
+			threads[t] = new Thread(() -> {
+				int[] ids = new int[blockSize];
+				int dealt;
+				// deals a single card at a time once there are not enough left for a whole block
+				while((dealt = sharedDeck.dealNextIds(blockSize, ids, 0)) > 0 || (dealt = sharedDeck.dealNextIds(1, ids, 0)) > 0){
+					for(int i = 0; i < dealt; i++){
+						long bit = 1L << ids[i];
+						if((dealtCards.getAndAccumulate(bit, (x, y) -> x | y) & bit) != 0){
+							duplicates.incrementAndGet();
+						}
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for(Thread thread: threads){
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		System.out.println("Cards dealt across threads: " + Long.bitCount(dealtCards.get()) + ", dealt twice: " + duplicates.get());
 	}
 
 }
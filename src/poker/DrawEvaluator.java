@@ -0,0 +1,311 @@
+package poker;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Works out the expected strength of a 5 card draw hand after the draw for every one of the 32 ways of choosing
+// which cards to discard, by going through every set of replacement cards which could be dealt from the 47 cards
+// not in the hand.
+//
+// The strength of a final hand is the chance it beats a random 5 card hand, counting a tie as half a win, so the
+// expected strength of a discard is the chance of winning a showdown against a random hand after making it.
+// Expected game values would be dominated by the hand type part of the value, e.g. a 1 in 20 chance of a flush
+// would count for more than a sure pair of Aces.
+//
+// Going through all the draws for a hand is about 2.6 million evaluations, so it is split across a ForkJoinPool
+// and the results are kept. Hands which are the same apart from their suits have the same results, so they are
+// kept once per HandIndexer index and looking up a hand seen before takes well under a microsecond.
+public class DrawEvaluator {
+
+	public static int DISCARDS = 1 << HandOfCards.CARDS_PER_HAND;  // every subset of the 5 cards
+
+	private static int UNSEEN_CARDS = PlayingCard.NUMBER_OF_CARDS - HandOfCards.CARDS_PER_HAND;
+
+	// every distinct 5 card game value in increasing order, and the strength of a hand with each value
+	private static final int[] GAME_VALUES;
+	private static final float[] STRENGTHS;
+
+	static {
+		// counts the 2,598,960 hands with each game value
+		int[] values = new int[2598960];
+		int count = 0;
+		for (int c0 = 0; c0 < PlayingCard.NUMBER_OF_CARDS; c0++) {
+			for (int c1 = c0 + 1; c1 < PlayingCard.NUMBER_OF_CARDS; c1++) {
+				for (int c2 = c1 + 1; c2 < PlayingCard.NUMBER_OF_CARDS; c2++) {
+					for (int c3 = c2 + 1; c3 < PlayingCard.NUMBER_OF_CARDS; c3++) {
+						for (int c4 = c3 + 1; c4 < PlayingCard.NUMBER_OF_CARDS; c4++) {
+							values[count++] = HandEvaluator.evaluate(c0, c1, c2, c3, c4);
+						}
+					}
+				}
+			}
+		}
+		Arrays.sort(values);
+
+		int distinct = 0;
+		for (int i = 0; i < count; i++) {
+			if(i == 0 || values[i] != values[i - 1]){
+				distinct++;
+			}
+		}
+		GAME_VALUES = new int[distinct];
+		STRENGTHS = new float[distinct];
+		int index = 0;
+		for (int start = 0; start < count; ) {
+			int end = start;
+			while(end < count && values[end] == values[start]){
+				end++;
+			}
+			// hands below this value are beaten, hands with the same value are tied
+			GAME_VALUES[index] = values[start];
+			STRENGTHS[index] = (float) ((start + (end - start) / 2.0) / count);
+			index++;
+			start = end;
+		}
+	}
+
+	private ForkJoinPool pool;
+
+	private HandIndexer indexer = HandIndexer.getFiveCardIndexer();
+
+	// expected strengths for every discard, by the index of the canonical hand, each one indexed by a
+	// discard mask over the cards of the canonical hand in order of id
+	private AtomicReferenceArray<float[]> cache = new AtomicReferenceArray<float[]>(HandIndexer.FIVE_CARD_HANDS);
+	private AtomicInteger cacheSize = new AtomicInteger();
+
+	public DrawEvaluator(){
+		this(ForkJoinPool.commonPool());
+	}
+
+	public DrawEvaluator(ForkJoinPool pool){
+		this.pool = pool;
+	}
+
+	// the chance a hand with this game value beats a random 5 card hand, a tie counting as half a win
+	public static float getStrength(int gameValue){
+		int index = Arrays.binarySearch(GAME_VALUES, gameValue);
+		if(index < 0){
+			throw new IllegalArgumentException("Not a 5 card game value: " + gameValue);
+		}
+		return STRENGTHS[index];
+	}
+
+	// expected strength after discarding the cards whose bits are set in discardMask (bit i for card i) and
+	// being dealt replacements at random from the cards not in the hand
+	public float getExpectedStrength(int[] cards, int discardMask){
+		int[] canonicalCards = new int[HandOfCards.CARDS_PER_HAND];
+		float[] strengths = getStrengths(cards, canonicalCards);
+		return strengths[toCanonicalMask(cards, canonicalCards, discardMask)];
+	}
+
+	public float getExpectedStrength(HandOfCards hand, int discardMask){
+		return getExpectedStrength(getCardIds(hand), discardMask);
+	}
+
+	// the discard mask with the highest expected strength out of those discarding at most maxCardsToDiscard
+	// cards, on a tie the one discarding fewer cards
+	public int getBestDiscard(int[] cards, int maxCardsToDiscard){
+		int[] canonicalCards = new int[HandOfCards.CARDS_PER_HAND];
+		float[] strengths = getStrengths(cards, canonicalCards);
+
+		int bestMask = 0;
+		float bestStrength = strengths[0];
+		for (int discardMask = 1; discardMask < DISCARDS; discardMask++) {
+			int cardsToDiscard = Integer.bitCount(discardMask);
+			if(cardsToDiscard > maxCardsToDiscard){
+				continue;
+			}
+			float strength = strengths[toCanonicalMask(cards, canonicalCards, discardMask)];
+			if(strength > bestStrength || (strength == bestStrength && cardsToDiscard < Integer.bitCount(bestMask))){
+				bestMask = discardMask;
+				bestStrength = strength;
+			}
+		}
+		return bestMask;
+	}
+
+	public int getBestDiscard(HandOfCards hand, int maxCardsToDiscard){
+		return getBestDiscard(getCardIds(hand), maxCardsToDiscard);
+	}
+
+	// whether the expected strengths for this hand have been worked out already, so asking for them is quick
+	public boolean isCached(int[] cards){
+		return cache.get(indexer.getIndex(cards)) != null;
+	}
+
+	// number of canonical hands worked out so far
+	public int getCacheSize(){
+		return cacheSize.get();
+	}
+
+	private static int[] getCardIds(HandOfCards hand){
+		int[] cards = new int[HandOfCards.CARDS_PER_HAND];
+		for (int i = 0; i < cards.length; i++) {
+			cards[i] = hand.getCardId(i);
+		}
+		return cards;
+	}
+
+	// fills in the canonical card for each card of the hand and returns the strengths for the canonical hand,
+	// working them out if this is the first time it has been seen
+	private float[] getStrengths(int[] cards, int[] canonicalCards){
+		int index = indexer.getIndex(cards, canonicalCards);
+		float[] strengths = cache.get(index);
+		if(strengths == null){
+			// two threads may both work out a new hand, the first one to finish is kept
+			strengths = calculate(indexer.getCards(index));
+			if(cache.compareAndSet(index, null, strengths)){
+				cacheSize.incrementAndGet();
+			}else{
+				strengths = cache.get(index);
+			}
+		}
+		return strengths;
+	}
+
+	// turns a discard mask over the cards of the hand into one over the canonical cards in order of id
+	private static int toCanonicalMask(int[] cards, int[] canonicalCards, int discardMask){
+		int canonicalMask = 0;
+		for (int i = 0; i < cards.length; i++) {
+			if((discardMask & (1 << i)) != 0){
+				// position of the canonical card in order of id is the number of canonical cards below it
+				int position = 0;
+				for (int other: canonicalCards) {
+					if(other < canonicalCards[i]){
+						position++;
+					}
+				}
+				canonicalMask |= 1 << position;
+			}
+		}
+		return canonicalMask;
+	}
+
+	// works out the expected strength of every discard from a hand, one task for each discard and first
+	// replacement card, so the large discards are spread over the threads
+	private float[] calculate(int[] cards){
+		long handMask = 0;
+		for (int card: cards) {
+			handMask |= 1L << card;
+		}
+		int[] unseenCards = new int[UNSEEN_CARDS];
+		int count = 0;
+		for (int id = 0; id < PlayingCard.NUMBER_OF_CARDS; id++) {
+			if((handMask & (1L << id)) == 0){
+				unseenCards[count++] = id;
+			}
+		}
+
+		double[][] totals = new double[DISCARDS][UNSEEN_CARDS];
+		RecursiveAction[] tasks = new RecursiveAction[(DISCARDS - 1) * UNSEEN_CARDS];
+		int numberOfTasks = 0;
+		for (int discardMask = 1; discardMask < DISCARDS; discardMask++) {
+			int cardsToDraw = Integer.bitCount(discardMask);
+			for (int first = 0; first <= UNSEEN_CARDS - cardsToDraw; first++) {
+				tasks[numberOfTasks++] = new DrawTask(cards, unseenCards, discardMask, first, totals[discardMask]);
+			}
+		}
+		RecursiveAction[] allTasks = Arrays.copyOf(tasks, numberOfTasks);
+		pool.invoke(new RecursiveAction() {
+			protected void compute(){
+				invokeAll(allTasks);
+			}
+		});
+
+		float[] strengths = new float[DISCARDS];
+		strengths[0] = getStrength(HandEvaluator.evaluate(cards[0], cards[1], cards[2], cards[3], cards[4]));
+		for (int discardMask = 1; discardMask < DISCARDS; discardMask++) {
+			double total = 0;
+			for (double partial: totals[discardMask]) {
+				total += partial;
+			}
+			strengths[discardMask] = (float) (total / combinations(UNSEEN_CARDS, Integer.bitCount(discardMask)));
+		}
+		return strengths;
+	}
+
+	private static long combinations(int n, int k){
+		long result = 1;
+		for (int i = 0; i < k; i++) {
+			result = result * (n - i) / (i + 1);
+		}
+		return result;
+	}
+
+	// adds up the strengths of every draw for one discard where the first (lowest) replacement card is
+	// unseenCards[first], and the rest come from the unseen cards after it
+	private static class DrawTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private int[] cards;
+		private int[] unseenCards;
+		private int discardMask;
+		private int first;
+		private double[] totals;
+
+		DrawTask(int[] cards, int[] unseenCards, int discardMask, int first, double[] totals){
+			this.cards = cards;
+			this.unseenCards = unseenCards;
+			this.discardMask = discardMask;
+			this.first = first;
+			this.totals = totals;
+		}
+
+		protected void compute(){
+			// the kept cards go at the front, the replacement cards fill in the rest
+			int[] hand = new int[HandOfCards.CARDS_PER_HAND];
+			int kept = 0;
+			for (int i = 0; i < cards.length; i++) {
+				if((discardMask & (1 << i)) == 0){
+					hand[kept++] = cards[i];
+				}
+			}
+			hand[kept] = unseenCards[first];
+			totals[first] = draw(hand, kept + 1, first + 1);
+		}
+
+		// fills the hand from position upwards with every combination of the unseen cards from index on
+		private double draw(int[] hand, int position, int index){
+			if(position == HandOfCards.CARDS_PER_HAND){
+				return getStrength(HandEvaluator.evaluate(hand[0], hand[1], hand[2], hand[3], hand[4]));
+			}
+			double total = 0;
+			for (int i = index; i <= unseenCards.length - (HandOfCards.CARDS_PER_HAND - position); i++) {
+				hand[position] = unseenCards[i];
+				total += draw(hand, position + 1, i + 1);
+			}
+			return total;
+		}
+	}
+
+	public static void main(String[] args) {
+		DrawEvaluator evaluator = new DrawEvaluator();
+		System.out.println(GAME_VALUES.length + " distinct game values");
+
+		DeckOfCards deck = new DeckOfCards();
+		for (int i = 0; i < 10; i++) {
+			deck.reset();
+			deck.shuffle();
+			HandOfCards hand = new HandOfCards(deck);
+
+			long startTime = System.nanoTime();
+			int bestDiscard = evaluator.getBestDiscard(hand, PokerPlayer.MAX_CARDS_TO_DISCARD);
+			long firstTime = System.nanoTime() - startTime;
+			startTime = System.nanoTime();
+			evaluator.getBestDiscard(hand, PokerPlayer.MAX_CARDS_TO_DISCARD);
+			long cachedTime = System.nanoTime() - startTime;
+
+			StringBuilder discards = new StringBuilder();
+			for (int position = 0; position < HandOfCards.CARDS_PER_HAND; position++) {
+				if((bestDiscard & (1 << position)) != 0){
+					discards.append(hand.getCard(position)).append(" ");
+				}
+			}
+			System.out.println(hand + " discard " + discards + String.format("(%.4f kept, %.4f after the draw) %d us, cached %d ns",
+					evaluator.getExpectedStrength(hand, 0), evaluator.getExpectedStrength(hand, bestDiscard), firstTime / 1000, cachedTime));
+		}
+	}
+}
@@ -0,0 +1,246 @@
+package poker;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Estimates how often a Texas Hold'em hand wins against a number of opponents with random hands, by dealing out
+// the rest of the board and the opponents hands at random many times (rollouts) and comparing the results.
+//
+// The rollouts are split across all the threads of a ForkJoinPool. Each task has its own copy of the cards
+// left in the deck and its own random number generator, and uses the primitive 7 card evaluator, so a rollout
+// doesn't allocate anything or share anything with other threads.
+public class EquityCalculator {
+
+	public static int HOLE_CARDS = 2;
+	public static int BOARD_CARDS = 5;
+
+	// number of rollouts a single task does before it stops splitting its work in two
+	private static int ROLLOUTS_PER_TASK = 1 << 16;
+
+	private ForkJoinPool pool;
+
+	public EquityCalculator(){
+		this(ForkJoinPool.commonPool());
+	}
+
+	public EquityCalculator(ForkJoinPool pool){
+		this.pool = pool;
+	}
+
+	public Result calculate(PlayingCard[] holeCards, PlayingCard[] board, int opponents, long rollouts){
+		int[] boardIds = new int[board.length];
+		for (int i = 0; i < board.length; i++) {
+			boardIds[i] = board[i].getId();
+		}
+		return calculate(new int[]{holeCards[0].getId(), holeCards[1].getId()}, boardIds, opponents, rollouts, new SplittableRandom());
+	}
+
+	// hole cards and the known board cards (0 to 5 of them) are card ids, the random number generator is
+	// split between the tasks, so a generator with the same seed gives the same result
+	public Result calculate(int[] holeCards, int[] board, int opponents, long rollouts, SplittableRandom random){
+		if(holeCards.length != HOLE_CARDS || board.length > BOARD_CARDS || opponents < 1){
+			throw new IllegalArgumentException("Need 2 hole cards, up to 5 board cards and at least one opponent");
+		}
+
+		// the cards left in the deck are all the cards which aren't already known
+		long knownCards = 0;
+		for (int id: holeCards) {
+			knownCards |= 1L << id;
+		}
+		for (int id: board) {
+			knownCards |= 1L << id;
+		}
+		if(Long.bitCount(knownCards) != HOLE_CARDS + board.length){
+			throw new IllegalArgumentException("The same card can't be both a hole card and on the board");
+		}
+		int[] cardsLeft = new int[PlayingCard.NUMBER_OF_CARDS - Long.bitCount(knownCards)];
+		int count = 0;
+		for (int id = 0; id < PlayingCard.NUMBER_OF_CARDS; id++) {
+			if((knownCards & (1L << id)) == 0){
+				cardsLeft[count++] = id;
+			}
+		}
+		if(BOARD_CARDS - board.length + HOLE_CARDS * opponents > cardsLeft.length){
+			throw new IllegalArgumentException("Not enough cards left for " + opponents + " opponents");
+		}
+
+		RolloutTask task = new RolloutTask(holeCards, board, cardsLeft, opponents, rollouts, random);
+		return pool.invoke(task);
+	}
+
+	// splits its rollouts in half until there are few enough to do on one thread
+	private static class RolloutTask extends RecursiveTask<Result> {
+		private static final long serialVersionUID = 1L;
+
+		private int[] holeCards;
+		private int[] board;
+		private int[] cardsLeft;
+		private int opponents;
+		private long rollouts;
+		private SplittableRandom random;
+
+		RolloutTask(int[] holeCards, int[] board, int[] cardsLeft, int opponents, long rollouts, SplittableRandom random){
+			this.holeCards = holeCards;
+			this.board = board;
+			this.cardsLeft = cardsLeft;
+			this.opponents = opponents;
+			this.rollouts = rollouts;
+			this.random = random;
+		}
+
+		protected Result compute(){
+			if(rollouts <= ROLLOUTS_PER_TASK){
+				return rollout();
+			}
+
+			// the forked half gets its own random numbers split from ours
+			long half = rollouts / 2;
+			RolloutTask other = new RolloutTask(holeCards, board, cardsLeft, opponents, half, random.split());
+			other.fork();
+			rollouts -= half;
+			Result result = compute();
+			result.add(other.join());
+			return result;
+		}
+
+		private Result rollout(){
+			// this tasks own deck, the cards needed for each rollout are dealt from it at random and it is
+			// then set back to the cards left, so nothing needs to be reshuffled
+			long liveCards = 0;
+			for (int id: cardsLeft) {
+				liveCards |= 1L << id;
+			}
+			DeadCardDeck deck = new DeadCardDeck(random);
+			int[] dealt = new int[BOARD_CARDS + HOLE_CARDS * opponents];
+			int[] fullBoard = new int[BOARD_CARDS];
+			System.arraycopy(board, 0, fullBoard, 0, board.length);
+
+			int boardCardsNeeded = BOARD_CARDS - board.length;
+			int cardsNeeded = boardCardsNeeded + HOLE_CARDS * opponents;
+			int h0 = holeCards[0];
+			int h1 = holeCards[1];
+			long wins = 0, ties = 0, losses = 0;
+			double tieShares = 0;
+
+			for (long r = 0; r < rollouts; r++) {
+				deck.setRemainingCards(liveCards);
+				deck.dealNextIds(cardsNeeded, dealt, 0);
+				for (int i = 0; i < boardCardsNeeded; i++) {
+					fullBoard[board.length + i] = dealt[i];
+				}
+
+				int b0 = fullBoard[0], b1 = fullBoard[1], b2 = fullBoard[2], b3 = fullBoard[3], b4 = fullBoard[4];
+				int ourValue = HandEvaluator.evaluate(h0, h1, b0, b1, b2, b3, b4);
+
+				// compares each opponent's hand with ours, stopping as soon as one beats us
+				int tiedWith = 0;
+				boolean lost = false;
+				for (int o = boardCardsNeeded; o < cardsNeeded; o += HOLE_CARDS) {
+					int value = HandEvaluator.evaluate(dealt[o], dealt[o + 1], b0, b1, b2, b3, b4);
+					if(value > ourValue){
+						lost = true;
+						break;
+					}
+					if(value == ourValue){
+						tiedWith++;
+					}
+				}
+
+				if(lost){
+					losses++;
+				}else if(tiedWith > 0){
+					ties++;
+					tieShares += 1.0 / (tiedWith + 1);
+				}else{
+					wins++;
+				}
+			}
+			return new Result(wins, ties, losses, tieShares);
+		}
+	}
+
+	// counts of the rollouts won, tied and lost
+	public static class Result {
+		private long wins;
+		private long ties;
+		private long losses;
+		private double tieShares;  // share of the pot won in tied rollouts, e.g. 1/2 when tied with one opponent
+
+		Result(long wins, long ties, long losses, double tieShares){
+			this.wins = wins;
+			this.ties = ties;
+			this.losses = losses;
+			this.tieShares = tieShares;
+		}
+
+		void add(Result other){
+			wins += other.wins;
+			ties += other.ties;
+			losses += other.losses;
+			tieShares += other.tieShares;
+		}
+
+		public long getRollouts(){
+			return wins + ties + losses;
+		}
+
+		public long getWins(){
+			return wins;
+		}
+
+		public long getTies(){
+			return ties;
+		}
+
+		public long getLosses(){
+			return losses;
+		}
+
+		public double getWinFraction(){
+			return (double) wins / getRollouts();
+		}
+
+		public double getTieFraction(){
+			return (double) ties / getRollouts();
+		}
+
+		public double getLossFraction(){
+			return (double) losses / getRollouts();
+		}
+
+		// the average share of the pot won, counting a split pot as a part win
+		public double getEquity(){
+			return (wins + tieShares) / getRollouts();
+		}
+
+		public String toString(){
+			return String.format("win %.4f tie %.4f loss %.4f equity %.4f (%d rollouts)", getWinFraction(), getTieFraction(),
+					getLossFraction(), getEquity(), getRollouts());
+		}
+	}
+
+	public static void main(String[] args) {
+		EquityCalculator calculator = new EquityCalculator();
+
+		// pocket Aces against 1, 3 and 8 opponents before the flop
+		PlayingCard[] aces = {PlayingCard.getCard("A", PlayingCard.HEARTS), PlayingCard.getCard("A", PlayingCard.SPADES)};
+		for (int opponents: new int[]{1, 3, 8}) {
+			System.out.println("AH AS against " + opponents + ": " + calculator.calculate(aces, new PlayingCard[0], opponents, 2000000));
+		}
+
+		// a flush draw on the flop against 2 opponents
+		PlayingCard[] holeCards = {PlayingCard.getCard("K", PlayingCard.HEARTS), PlayingCard.getCard("Q", PlayingCard.HEARTS)};
+		PlayingCard[] flop = {PlayingCard.getCard("2", PlayingCard.HEARTS), PlayingCard.getCard("7", PlayingCard.HEARTS), PlayingCard.getCard("J", PlayingCard.CLUBS)};
+		System.out.println("KH QH on 2H 7H JC against 2: " + calculator.calculate(holeCards, flop, 2, 2000000));
+
+		// times heads up rollouts once the JIT has warmed up
+		for (int round = 0; round < 5; round++) {
+			long startTime = System.nanoTime();
+			long rollouts = 20000000;
+			calculator.calculate(aces, new PlayingCard[0], 1, rollouts);
+			long timeDifference = System.nanoTime() - startTime;
+			System.out.println((long) (rollouts * 1e9 / timeDifference) + " rollouts/sec on " + calculator.pool.getParallelism() + " threads");
+		}
+	}
+}
@@ -0,0 +1,293 @@
+package poker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Works out the exact equity of a heads up Texas Hold'em hand, by going through every possible way of dealing
+// the rest of the board (and the opponent's hole cards, when they are not known) instead of sampling them.
+//
+// The cards left to deal are everything not in the dead card mask (our hole cards, the board and the opponent's
+// hole cards if known). Boards which are the same apart from swapping suits that nothing else tells apart, e.g. two
+// suits which none of the known cards are in, always give the same result, so only one board of each such group
+// is evaluated and its result is counted once for every board in the group.
+//
+// The counts in the result are exact, each one being a number of equally likely deals.
+public class ExactEquityCalculator {
+
+	private static int SUITS = 4;
+	private static long SUIT_PATTERN = 0x1111111111111L;  // bits of the 13 cards of suit 0 in a card mask, shifting by s gives suit s
+	private static long ALL_CARDS = (1L << PlayingCard.NUMBER_OF_CARDS) - 1;
+
+	private ForkJoinPool pool;
+
+	public ExactEquityCalculator(){
+		this(ForkJoinPool.commonPool());
+	}
+
+	public ExactEquityCalculator(ForkJoinPool pool){
+		this.pool = pool;
+	}
+
+	// equity against an opponent with a random hand
+	public EquityCalculator.Result calculate(int[] holeCards, int[] board){
+		return calculate(holeCards, board, null);
+	}
+
+	// equity against an opponent holding the given hole cards, or a random hand if opponentCards is null
+	public EquityCalculator.Result calculate(int[] holeCards, int[] board, int[] opponentCards){
+		if(holeCards.length != EquityCalculator.HOLE_CARDS || board.length > EquityCalculator.BOARD_CARDS
+				|| (opponentCards != null && opponentCards.length != EquityCalculator.HOLE_CARDS)){
+			throw new IllegalArgumentException("Need 2 hole cards each and up to 5 board cards");
+		}
+
+		long ourCards = getMask(holeCards);
+		long boardCards = getMask(board);
+		long theirCards = opponentCards == null ? 0 : getMask(opponentCards);
+		long deadCards = ourCards | boardCards | theirCards;
+		int numberOfDeadCards = holeCards.length + board.length + (opponentCards == null ? 0 : opponentCards.length);
+		if(Long.bitCount(deadCards) != numberOfDeadCards){
+			throw new IllegalArgumentException("The same card can't be dealt twice");
+		}
+
+		// cards left in the deck, in order of id
+		long liveCards = ALL_CARDS & ~deadCards;
+		int[] cardsLeft = new int[Long.bitCount(liveCards)];
+		int count = 0;
+		for (long mask = liveCards; mask != 0; mask &= mask - 1) {
+			cardsLeft[count++] = Long.numberOfTrailingZeros(mask);
+		}
+
+		Spot spot = new Spot(holeCards, board, opponentCards, cardsLeft,
+				getSuitPermutations(ourCards, boardCards, theirCards));
+
+		// one task for each choice of the first board card to be dealt, when there is one
+		int boardCardsNeeded = EquityCalculator.BOARD_CARDS - board.length;
+		List<EnumerationTask> tasks = new ArrayList<EnumerationTask>();
+		if(boardCardsNeeded == 0){
+			tasks.add(new EnumerationTask(spot, -1));
+		}else{
+			for (int first = 0; first <= cardsLeft.length - boardCardsNeeded; first++) {
+				tasks.add(new EnumerationTask(spot, first));
+			}
+		}
+
+		return pool.invoke(new RecursiveTask<EquityCalculator.Result>() {
+			protected EquityCalculator.Result compute(){
+				EquityCalculator.Result result = new EquityCalculator.Result(0, 0, 0, 0);
+				for (EnumerationTask task: invokeAll(tasks)) {
+					result.add(task.join());
+				}
+				return result;
+			}
+		});
+	}
+
+	// the known cards of a spot, shared by all its tasks but never changed
+	private static class Spot {
+		int[] holeCards;
+		int[] board;
+		int[] opponentCards;
+		int[] cardsLeft;
+		int[][] suitPermutations;  // every way of swapping suits which leaves the known cards as they are
+
+		Spot(int[] holeCards, int[] board, int[] opponentCards, int[] cardsLeft, int[][] suitPermutations){
+			this.holeCards = holeCards;
+			this.board = board;
+			this.opponentCards = opponentCards;
+			this.cardsLeft = cardsLeft;
+			this.suitPermutations = suitPermutations;
+		}
+	}
+
+	// deals every board starting with a given first card, and adds up the results
+	private static class EnumerationTask extends RecursiveTask<EquityCalculator.Result> {
+		private static final long serialVersionUID = 1L;
+
+		private Spot spot;
+		private int firstCardIndex;  // index into cardsLeft of the first board card, -1 when the board is complete
+
+		private int[] fullBoard = new int[EquityCalculator.BOARD_CARDS];
+		private long[] images;
+		private long wins, ties, losses;
+
+		EnumerationTask(Spot spot, int firstCardIndex){
+			this.spot = spot;
+			this.firstCardIndex = firstCardIndex;
+			this.images = new long[spot.suitPermutations.length];
+		}
+
+		protected EquityCalculator.Result compute(){
+			System.arraycopy(spot.board, 0, fullBoard, 0, spot.board.length);
+			if(firstCardIndex == -1){
+				countBoard(0, 1);
+			}else{
+				int card = spot.cardsLeft[firstCardIndex];
+				fullBoard[spot.board.length] = card;
+				dealBoard(spot.board.length + 1, firstCardIndex + 1, 1L << card);
+			}
+			// split pots against one opponent are always half the pot
+			return new EquityCalculator.Result(wins, ties, losses, ties / 2.0);
+		}
+
+		// deals the rest of the board in order of index, so each set of cards is only dealt once
+		private void dealBoard(int boardSize, int nextIndex, long dealtCards){
+			if(boardSize == EquityCalculator.BOARD_CARDS){
+				int boardsLikeThis = countSuitIsomorphicBoards(dealtCards);
+				if(boardsLikeThis > 0){
+					countBoard(dealtCards, boardsLikeThis);
+				}
+				return;
+			}
+			int cardsStillNeeded = EquityCalculator.BOARD_CARDS - boardSize;
+			for (int i = nextIndex; i <= spot.cardsLeft.length - cardsStillNeeded; i++) {
+				int card = spot.cardsLeft[i];
+				fullBoard[boardSize] = card;
+				dealBoard(boardSize + 1, i + 1, dealtCards | (1L << card));
+			}
+		}
+
+		// if these dealt cards are the lowest of all the ways of swapping the interchangeable suits, returns the number
+		// of different boards they can be swapped into, otherwise returns 0 as they are counted with the lowest one
+		private int countSuitIsomorphicBoards(long dealtCards){
+			int[][] permutations = spot.suitPermutations;
+			if(permutations.length == 1){
+				return 1;
+			}
+
+			int distinct = 0;
+			for (int p = 0; p < permutations.length; p++) {
+				long image = permute(dealtCards, permutations[p]);
+				if(image < dealtCards){
+					return 0;
+				}
+				boolean seen = false;
+				for (int i = 0; i < distinct && !seen; i++) {
+					seen = images[i] == image;
+				}
+				if(!seen){
+					images[distinct++] = image;
+				}
+			}
+			return distinct;
+		}
+
+		// compares our hand with the opponent's on the completed board, weight is the number of boards it stands for
+		private void countBoard(long dealtCards, int weight){
+			int b0 = fullBoard[0], b1 = fullBoard[1], b2 = fullBoard[2], b3 = fullBoard[3], b4 = fullBoard[4];
+			int ourValue = HandEvaluator.evaluate(spot.holeCards[0], spot.holeCards[1], b0, b1, b2, b3, b4);
+
+			if(spot.opponentCards != null){
+				int theirValue = HandEvaluator.evaluate(spot.opponentCards[0], spot.opponentCards[1], b0, b1, b2, b3, b4);
+				addResult(ourValue, theirValue, weight);
+				return;
+			}
+
+			// every hand the opponent could have from the cards which weren't dealt to the board
+			int[] cardsLeft = spot.cardsLeft;
+			for (int i = 0; i < cardsLeft.length; i++) {
+				int c0 = cardsLeft[i];
+				if((dealtCards & (1L << c0)) != 0){
+					continue;
+				}
+				for (int j = i + 1; j < cardsLeft.length; j++) {
+					int c1 = cardsLeft[j];
+					if((dealtCards & (1L << c1)) != 0){
+						continue;
+					}
+					addResult(ourValue, HandEvaluator.evaluate(c0, c1, b0, b1, b2, b3, b4), weight);
+				}
+			}
+		}
+
+		private void addResult(int ourValue, int theirValue, int weight){
+			if(ourValue > theirValue){
+				wins += weight;
+			}else if(ourValue == theirValue){
+				ties += weight;
+			}else{
+				losses += weight;
+			}
+		}
+	}
+
+	// works out which suits can be swapped without changing any of the known cards, two suits are
+	// interchangeable when our cards, the board and the opponent's cards have the same ranks in both,
+	// then returns every permutation of the suits which only swaps interchangeable suits
+	private static int[][] getSuitPermutations(long ourCards, long boardCards, long theirCards){
+		List<int[]> permutations = new ArrayList<int[]>();
+		addSuitPermutations(new int[SUITS], 0, 0, ourCards, boardCards, theirCards, permutations);
+		return permutations.toArray(new int[permutations.size()][]);
+	}
+
+	private static void addSuitPermutations(int[] permutation, int suit, int usedSuits, long ourCards, long boardCards, long theirCards, List<int[]> permutations){
+		if(suit == SUITS){
+			permutations.add(permutation.clone());
+			return;
+		}
+		for (int target = 0; target < SUITS; target++) {
+			if((usedSuits & (1 << target)) == 0 && sameRanks(ourCards, suit, target)
+					&& sameRanks(boardCards, suit, target) && sameRanks(theirCards, suit, target)){
+				permutation[suit] = target;
+				addSuitPermutations(permutation, suit + 1, usedSuits | (1 << target), ourCards, boardCards, theirCards, permutations);
+			}
+		}
+	}
+
+	private static boolean sameRanks(long cards, int suit1, int suit2){
+		return ((cards >>> suit1) & SUIT_PATTERN) == ((cards >>> suit2) & SUIT_PATTERN);
+	}
+
+	// moves the cards of each suit s in the mask to suit permutation[s]
+	static long permute(long cards, int[] permutation){
+		long result = 0;
+		for (int suit = 0; suit < SUITS; suit++) {
+			result |= ((cards >>> suit) & SUIT_PATTERN) << permutation[suit];
+		}
+		return result;
+	}
+
+	private static long getMask(int[] ids){
+		long mask = 0;
+		for (int id: ids) {
+			mask |= 1L << id;
+		}
+		return mask;
+	}
+
+	public static void main(String[] args) {
+		ExactEquityCalculator calculator = new ExactEquityCalculator();
+		EquityCalculator sampler = new EquityCalculator();
+
+		int[] holeCards = {PlayingCard.getCard("K", PlayingCard.HEARTS).getId(), PlayingCard.getCard("Q", PlayingCard.HEARTS).getId()};
+		int[] flop = {PlayingCard.getCard("2", PlayingCard.HEARTS).getId(), PlayingCard.getCard("7", PlayingCard.HEARTS).getId(),
+				PlayingCard.getCard("J", PlayingCard.CLUBS).getId()};
+		int[] turn = {flop[0], flop[1], flop[2], PlayingCard.getCard("3", PlayingCard.SPADES).getId()};
+		int[] river = {turn[0], turn[1], turn[2], turn[3], PlayingCard.getCard("9", PlayingCard.DIAMONDS).getId()};
+		int[] opponentCards = {PlayingCard.getCard("J", PlayingCard.SPADES).getId(), PlayingCard.getCard("10", PlayingCard.SPADES).getId()};
+
+		// compares each exact result with a sampled one, then times it
+		int[][] boards = {river, turn, flop};
+		String[] streets = {"river", "turn", "flop"};
+		for (int b = 0; b < boards.length; b++) {
+			System.out.println(streets[b] + " exact:   " + calculator.calculate(holeCards, boards[b]));
+			System.out.println(streets[b] + " sampled: " + sampler.calculate(holeCards, boards[b], 1, 2000000, new java.util.SplittableRandom(1)));
+			System.out.println(streets[b] + " exact against JS 10S: " + calculator.calculate(holeCards, boards[b], opponentCards));
+
+			for (int round = 0; round < 5; round++) {
+				long startTime = System.nanoTime();
+				calculator.calculate(holeCards, boards[b]);
+				System.out.println(streets[b] + " took " + (System.nanoTime() - startTime) / 1000000.0 + " ms");
+			}
+			System.out.println();
+		}
+
+		// a flop with two suits which are not in any known card, so boards using them are only evaluated once
+		int[] pair = {PlayingCard.getCard("8", PlayingCard.HEARTS).getId(), PlayingCard.getCard("8", PlayingCard.SPADES).getId()};
+		int[] dryFlop = {PlayingCard.getCard("A", PlayingCard.HEARTS).getId(), PlayingCard.getCard("K", PlayingCard.SPADES).getId(),
+				PlayingCard.getCard("4", PlayingCard.HEARTS).getId()};
+		System.out.println("8H 8S on AH KS 4H exact:   " + calculator.calculate(pair, dryFlop));
+		System.out.println("8H 8S on AH KS 4H sampled: " + sampler.calculate(pair, dryFlop, 1, 2000000, new java.util.SplittableRandom(1)));
+	}
+}
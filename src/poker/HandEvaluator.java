@@ -0,0 +1,435 @@
+package poker;
+
+import java.util.Arrays;
+
+import poker.HandOfCards.Type;
+
+// Table driven hand evaluator. All the work of classifying a hand is done once when the class is loaded,
+// after that a 5 card hand is valued with a handful of additions and two array reads, and a 7 card
+// Texas Hold'em hand (2 hole cards and 5 board cards) is valued the same way, without looking at its 21 
+// 5 card subsets.
+//
+// The values returned use the same scheme as HandOfCards.getGameValue(), i.e. Type.ordinal() * 1000000
+// plus a component which orders hands of the same type, so the values of the two can be compared directly.
+public class HandEvaluator {
+
+	public static int HAND_SIZE = 5;
+	public static int HOLDEM_HAND_SIZE = 7;  // 2 hole cards and 5 board cards
+	private static int FACTOR = 14;  // base used when combining the game values of cards into a single value
+	private static int RANKS = 13;   // 2 3 4 ... Q K A, rank index is game value - 2
+	private static int ACE = 12;     // rank index of an Ace
+	private static int FIVE = 3;     // rank index of a 5, the high card of a wheel (A 2 3 4 5)
+	private static int WHEEL_MASK = 0x100F; // rank bits for A 2 3 4 5
+
+	// Each rank is given a key such that the sum of the keys of any 5, 6 or 7 cards (with at most 4 of
+	// any rank) is unique. This sum identifies the ranks in the hand no matter what order the cards are in,
+	// it is the same idea as multiplying a prime per rank, but the sums stay small enough to index a table
+	private static final int[] RANK_KEYS = {0, 1, 5, 22, 98, 453, 2031, 8698, 22854, 83661, 262349, 636345, 1479181};
+
+	// keys are grouped into blocks of 512, each block is given an offset into a shared value table
+	// so that no two keys land in the same slot (a perfect hash)
+	private static final int BLOCK_SHIFT = 9;
+	private static final int BLOCK_MASK = (1 << BLOCK_SHIFT) - 1;
+
+	// value of the best flush or straight flush indexed by the 13 bit mask of the ranks in the flush suit
+	private static final int[] FLUSH_VALUES = new int[1 << RANKS];
+
+	// values of non flush 5 card hands, indexed through the perfect hash of their rank key sum
+	private static final int[] UNSUITED_OFFSETS;
+	private static final int[] UNSUITED_VALUES;
+
+	// values of the best non flush hand in 7 cards, indexed the same way
+	private static final int[] SEVEN_CARD_OFFSETS;
+	private static final int[] SEVEN_CARD_VALUES;
+
+	// the primitive evaluate methods take card ids, rank index * 4 + suit index, see PlayingCard.getId()
+	// these arrays hold what each card adds to the rank key, the rank mask and the suit counts
+	private static final int[] CARD_RANK_KEYS = new int[PlayingCard.NUMBER_OF_CARDS];
+	private static final int[] CARD_RANK_BITS = new int[PlayingCard.NUMBER_OF_CARDS];
+
+	// the rank key in the high 32 bits and 4 bits for the count of each suit in the low 32 bits, so the 7 card
+	// evaluator adds up both with a single array read per card
+	private static final long[] CARD_KEYS_AND_SUIT_COUNTS = new long[PlayingCard.NUMBER_OF_CARDS];
+
+	// adding 3 to each 4 bit suit count sets its high bit once the suit has 5 or more cards
+	private static final int FLUSH_CHECK_ADD = 0x3333;
+	private static final int FLUSH_CHECK_MASK = 0x8888;
+
+	private static final Type[] TYPES = Type.values();
+
+	static {
+		for (int mask = 0; mask < FLUSH_VALUES.length; mask++) {
+			if(Integer.bitCount(mask) >= HAND_SIZE){
+				FLUSH_VALUES[mask] = flushValue(mask);
+			}
+		}
+
+		int[][] hash = buildPerfectHash(HAND_SIZE);
+		UNSUITED_OFFSETS = hash[0];
+		UNSUITED_VALUES = hash[1];
+
+		hash = buildPerfectHash(HOLDEM_HAND_SIZE);
+		SEVEN_CARD_OFFSETS = hash[0];
+		SEVEN_CARD_VALUES = hash[1];
+
+		for (int card = 0; card < PlayingCard.NUMBER_OF_CARDS; card++) {
+			CARD_RANK_KEYS[card] = RANK_KEYS[card >>> 2];
+			CARD_RANK_BITS[card] = 1 << (card >>> 2);
+			CARD_KEYS_AND_SUIT_COUNTS[card] = ((long) CARD_RANK_KEYS[card] << 32) | (1 << ((card & 3) * 4));
+		}
+	}
+
+	// evaluates a hand of exactly 5 cards
+	public static int evaluate(PlayingCard[] cards){
+		return evaluate(cards[0].getId(), cards[1].getId(), cards[2].getId(), cards[3].getId(), cards[4].getId());
+	}
+
+	// evaluates a hand of 5 card ids
+	public static int evaluate(int c0, int c1, int c2, int c3, int c4){
+		int key = CARD_RANK_KEYS[c0] + CARD_RANK_KEYS[c1] + CARD_RANK_KEYS[c2] + CARD_RANK_KEYS[c3] + CARD_RANK_KEYS[c4];
+
+		// all five cards share a suit only if their suits are all equal
+		if(((c0 ^ c1) & 3) == 0 && ((c0 ^ c2) & 3) == 0 && ((c0 ^ c3) & 3) == 0 && ((c0 ^ c4) & 3) == 0){
+			return FLUSH_VALUES[CARD_RANK_BITS[c0] | CARD_RANK_BITS[c1] | CARD_RANK_BITS[c2] | CARD_RANK_BITS[c3] | CARD_RANK_BITS[c4]];
+		}
+		return UNSUITED_VALUES[UNSUITED_OFFSETS[key >>> BLOCK_SHIFT] + (key & BLOCK_MASK)];
+	}
+
+	// evaluates the best 5 card hand out of 7 card ids, e.g. 2 hole cards and a 5 card board
+	// the value is the same as the value of the best 5 card hand, but no 5 card hand is ever built
+	public static int evaluate(int c0, int c1, int c2, int c3, int c4, int c5, int c6){
+		long sum = CARD_KEYS_AND_SUIT_COUNTS[c0] + CARD_KEYS_AND_SUIT_COUNTS[c1] + CARD_KEYS_AND_SUIT_COUNTS[c2] + CARD_KEYS_AND_SUIT_COUNTS[c3]
+				+ CARD_KEYS_AND_SUIT_COUNTS[c4] + CARD_KEYS_AND_SUIT_COUNTS[c5] + CARD_KEYS_AND_SUIT_COUNTS[c6];
+		int flushCheck = ((int) sum + FLUSH_CHECK_ADD) & FLUSH_CHECK_MASK;
+
+		if(flushCheck == 0){
+			int key = (int) (sum >>> 32);
+			return SEVEN_CARD_VALUES[SEVEN_CARD_OFFSETS[key >>> BLOCK_SHIFT] + (key & BLOCK_MASK)];
+		}
+
+		// with 5 or more cards of one suit in 7 cards there can't be a full house or four of a kind,
+		// so the best hand is the best flush in that suit
+		int flushSuit = Integer.numberOfTrailingZeros(flushCheck) >>> 2;
+		int rankMask = 0;
+		if((c0 & 3) == flushSuit) rankMask |= CARD_RANK_BITS[c0];
+		if((c1 & 3) == flushSuit) rankMask |= CARD_RANK_BITS[c1];
+		if((c2 & 3) == flushSuit) rankMask |= CARD_RANK_BITS[c2];
+		if((c3 & 3) == flushSuit) rankMask |= CARD_RANK_BITS[c3];
+		if((c4 & 3) == flushSuit) rankMask |= CARD_RANK_BITS[c4];
+		if((c5 & 3) == flushSuit) rankMask |= CARD_RANK_BITS[c5];
+		if((c6 & 3) == flushSuit) rankMask |= CARD_RANK_BITS[c6];
+		return FLUSH_VALUES[rankMask];
+	}
+
+	// evaluates the best hand from a players 2 hole cards and the 5 board cards
+	public static int evaluate(PlayingCard[] holeCards, PlayingCard[] board){
+		return evaluate(holeCards[0].getId(), holeCards[1].getId(),
+				board[0].getId(), board[1].getId(), board[2].getId(), board[3].getId(), board[4].getId());
+	}
+
+	// value of the best hand in 7 cards given the count of each rank index and the mask of the ranks of the
+	// flush suit, 0 if there isn't a suit with 5 or more cards, for evaluators which don't keep the cards
+	static int evaluate(int[] rankCounts, int flushRankMask){
+		if(Integer.bitCount(flushRankMask) >= HAND_SIZE){
+			return FLUSH_VALUES[flushRankMask];
+		}
+		int key = 0;
+		for (int rank = 0; rank < RANKS; rank++) {
+			key += rankCounts[rank] * RANK_KEYS[rank];
+		}
+		return SEVEN_CARD_VALUES[SEVEN_CARD_OFFSETS[key >>> BLOCK_SHIFT] + (key & BLOCK_MASK)];
+	}
+
+	// the type of hand is encoded in the millions of the game value
+	public static Type getHandType(int gameValue){
+		return TYPES[gameValue / HandOfCards.DEFAULT_HAND_VALUE];
+	}
+
+	public static void main(String[] args) {
+		java.util.Random random = new java.util.Random();
+		int hands = 1000000;
+		int[] cards = new int[hands * HOLDEM_HAND_SIZE];
+
+		// deals random 7 card hands as card ids, with no card repeated in a hand
+		for (int h = 0; h < hands; h++) {
+			long dealt = 0;
+			for (int i = 0; i < HOLDEM_HAND_SIZE; i++) {
+				int card;
+				do {
+					card = random.nextInt(PlayingCard.NUMBER_OF_CARDS);
+				} while((dealt & (1L << card)) != 0);
+				dealt |= 1L << card;
+				cards[h * HOLDEM_HAND_SIZE + i] = card;
+			}
+		}
+
+		// checks the 7 card evaluator against the best of the 21 5 card hands
+		int errors = 0;
+		for (int h = 0; h < 100000; h++) {
+			int o = h * HOLDEM_HAND_SIZE;
+			int best = 0;
+			for (int skip1 = 0; skip1 < HOLDEM_HAND_SIZE; skip1++) {
+				for (int skip2 = skip1 + 1; skip2 < HOLDEM_HAND_SIZE; skip2++) {
+					int[] five = new int[HAND_SIZE];
+					int n = 0;
+					for (int i = 0; i < HOLDEM_HAND_SIZE; i++) {
+						if(i != skip1 && i != skip2){
+							five[n++] = cards[o + i];
+						}
+					}
+					best = Math.max(best, evaluate(five[0], five[1], five[2], five[3], five[4]));
+				}
+			}
+			int value = evaluate(cards[o], cards[o + 1], cards[o + 2], cards[o + 3], cards[o + 4], cards[o + 5], cards[o + 6]);
+			if(value != best){
+				errors++;
+			}
+		}
+		System.out.println("7 card evaluator mismatches: " + errors);
+
+		// times the 7 card evaluator, repeating a few times so the JIT has compiled it
+		for (int round = 0; round < 10; round++) {
+			long startTime = System.nanoTime();
+			int checksum = 0;
+			for (int o = 0; o < cards.length; o += HOLDEM_HAND_SIZE) {
+				checksum += evaluate(cards[o], cards[o + 1], cards[o + 2], cards[o + 3], cards[o + 4], cards[o + 5], cards[o + 6]);
+			}
+			long timeDifference = System.nanoTime() - startTime;
+			System.out.println((long) (hands * 1e9 / timeDifference) + " evaluations/sec (" + checksum + ")");
+		}
+	}
+
+	//**************************************************************************************************
+	// Table generation, only used when the class is loaded ********************************************
+	//**************************************************************************************************
+
+	// builds the perfect hash for every set of ranks (with up to 4 of each rank) that makes up a hand
+	// of the given size, returns the block offsets and the table of values
+	private static int[][] buildPerfectHash(int handSize){
+		int maxKey = RANK_KEYS[RANKS - 1] * 4 + RANK_KEYS[RANKS - 2] * (handSize - 4);
+		int blocks = (maxKey >>> BLOCK_SHIFT) + 1;
+
+		// works out the value of every rank count combination
+		int[] keys = new int[maxKey + 1];
+		int[] values = new int[maxKey + 1];
+		int count = addRankCombinations(new int[RANKS], 0, handSize, handSize, keys, values, 0);
+
+		int[] valueByKey = new int[maxKey + 1];
+		for (int i = 0; i < count; i++) {
+			valueByKey[keys[i]] = values[i];
+		}
+		keys = Arrays.copyOf(keys, count);
+		Arrays.sort(keys);
+
+		// the keys of each block are next to each other once sorted, blockStart[b] is the first of them
+		int[] blockStart = new int[blocks + 1];
+		for (int i = 0; i < count; i++) {
+			blockStart[(keys[i] >>> BLOCK_SHIFT) + 1]++;
+		}
+		for (int block = 0; block < blocks; block++) {
+			blockStart[block + 1] += blockStart[block];
+		}
+
+		// places the fullest blocks first, each at the lowest offset where none of its keys collide
+		Integer[] order = new Integer[blocks];
+		for (int i = 0; i < blocks; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> (blockStart[b + 1] - blockStart[b]) - (blockStart[a + 1] - blockStart[a]));
+
+		int[] offsets = new int[blocks];
+		boolean[] used = new boolean[(blocks + 1) * (BLOCK_MASK + 1)];
+		int firstFree = 0;
+		int tableSize = 0;
+
+		for (int block: order) {
+			int from = blockStart[block];
+			int to = blockStart[block + 1];
+			if(from == to){
+				break;
+			}
+
+			// the lowest key in the block can't go below the first free slot
+			int offset = Math.max(0, firstFree - (keys[from] & BLOCK_MASK));
+			boolean fits = false;
+			while(!fits){
+				fits = true;
+				for (int i = from; i < to; i++) {
+					if(used[offset + (keys[i] & BLOCK_MASK)]){
+						fits = false;
+						offset++;
+						break;
+					}
+				}
+			}
+
+			for (int i = from; i < to; i++) {
+				int slot = offset + (keys[i] & BLOCK_MASK);
+				used[slot] = true;
+				tableSize = Math.max(tableSize, slot + 1);
+			}
+			offsets[block] = offset;
+			while(used[firstFree]){
+				firstFree++;
+			}
+		}
+
+		int[] table = new int[tableSize];
+		for (int i = 0; i < count; i++) {
+			table[offsets[keys[i] >>> BLOCK_SHIFT] + (keys[i] & BLOCK_MASK)] = valueByKey[keys[i]];
+		}
+		return new int[][]{offsets, table};
+	}
+
+	// recursively fills in every way of spreading handSize cards over the 13 ranks, storing the rank key
+	// sum and the value of the best non flush hand those ranks make, returns the number of entries
+	private static int addRankCombinations(int[] rankCounts, int rank, int cardsLeft, int handSize, int[] keys, int[] values, int count){
+		if(rank == RANKS){
+			if(cardsLeft == 0){
+				int key = 0;
+				for (int i = 0; i < RANKS; i++) {
+					key += rankCounts[i] * RANK_KEYS[i];
+				}
+				keys[count] = key;
+				values[count] = bestUnsuitedValue(rankCounts, handSize);
+				count++;
+			}
+			return count;
+		}
+
+		for (int n = 0; n <= 4 && n <= cardsLeft; n++) {
+			rankCounts[rank] = n;
+			count = addRankCombinations(rankCounts, rank + 1, cardsLeft - n, handSize, keys, values, count);
+		}
+		rankCounts[rank] = 0;
+		return count;
+	}
+
+	// the best value of any 5 cards taken from the ranks given, ignoring suits
+	private static int bestUnsuitedValue(int[] rankCounts, int cardsInHand){
+		if(cardsInHand == HAND_SIZE){
+			return unsuitedValue(rankCounts);
+		}
+
+		// drops one card at a time until only 5 are left
+		int best = 0;
+		for (int rank = 0; rank < RANKS; rank++) {
+			if(rankCounts[rank] > 0){
+				rankCounts[rank]--;
+				best = Math.max(best, bestUnsuitedValue(rankCounts, cardsInHand - 1));
+				rankCounts[rank]++;
+			}
+		}
+		return best;
+	}
+
+	// value of a 5 card hand which is not a flush
+	private static int unsuitedValue(int[] rankCounts){
+		int rankMask = 0;
+		int four = -1, three = -1, highPair = -1, lowPair = -1;
+		int[] singles = new int[HAND_SIZE];
+		int numberOfSingles = 0;
+
+		// goes from Ace down so that pairs and single cards are found highest first
+		for (int rank = RANKS - 1; rank >= 0; rank--) {
+			int count = rankCounts[rank];
+			if(count > 0){
+				rankMask |= 1 << rank;
+			}
+			if(count == 4){
+				four = rank + 2;
+			}else if(count == 3){
+				three = rank + 2;
+			}else if(count == 2){
+				if(highPair == -1){
+					highPair = rank + 2;
+				}else{
+					lowPair = rank + 2;
+				}
+			}else if(count == 1){
+				singles[numberOfSingles++] = rank + 2;
+			}
+		}
+
+		if(four != -1){
+			// four of a kinds are ranked by the four of a kind card, then the odd card
+			return valueOf(Type.FourOfAKind, four * four * four * four + singles[0]);
+		}
+		if(three != -1 && highPair != -1){
+			// full houses are ranked by the three of a kind card, then the pair
+			return valueOf(Type.FullHouse, FACTOR * FACTOR * FACTOR * three + highPair);
+		}
+		if(numberOfSingles == HAND_SIZE){
+			int highCardInStraight = getHighCardInStraight(rankMask);
+			if(highCardInStraight != -1){
+				return valueOf(Type.Straight, power(highCardInStraight, 5));
+			}
+			return valueOf(Type.HighHand, combine(singles, 0, HAND_SIZE));
+		}
+		if(three != -1){
+			return valueOf(Type.ThreeOfAKind, FACTOR * FACTOR * FACTOR * three + combine(singles, 0, 2));
+		}
+		if(lowPair != -1){
+			return valueOf(Type.TwoPair, FACTOR * FACTOR * highPair + FACTOR * lowPair + singles[0]);
+		}
+		return valueOf(Type.OnePair, FACTOR * FACTOR * FACTOR * highPair + combine(singles, 0, 3));
+	}
+
+	// value of the best flush, straight flush or royal flush from the mask of the ranks in the flush suit
+	private static int flushValue(int rankMask){
+		int highCardInStraight = getHighCardInStraight(rankMask);
+		if(highCardInStraight == ACE + 2){
+			// all royal flushes are equal value
+			return valueOf(Type.RoyalFlush, 0);
+		}
+		if(highCardInStraight != -1){
+			return valueOf(Type.StraightFlush, power(highCardInStraight, 5));
+		}
+
+		int[] gameValues = new int[HAND_SIZE];
+		int index = 0;
+		for (int rank = RANKS - 1; rank >= 0; rank--) {
+			if((rankMask & (1 << rank)) != 0 && index < HAND_SIZE){
+				gameValues[index++] = rank + 2;
+			}
+		}
+		return valueOf(Type.Flush, combine(gameValues, 0, HAND_SIZE));
+	}
+
+	// returns the game value of the highest card of the best straight in the mask, or -1 if there is none
+	// a wheel (A 2 3 4 5) counts as a 5 high straight
+	static int getHighCardInStraight(int rankMask){
+		for (int high = ACE; high >= FIVE + 1; high--) {
+			int straight = 0x1F << (high - 4);
+			if((rankMask & straight) == straight){
+				return high + 2;
+			}
+		}
+		if((rankMask & WHEEL_MASK) == WHEEL_MASK){
+			return FIVE + 2;
+		}
+		return -1;
+	}
+
+	// multiplies each game value by the factor raised to a power which reduces as we go down the hand,
+	// so that hands are ordered by their highest card, then the next, then the next etc.
+	private static int combine(int[] gameValues, int from, int numberOfCards){
+		int component = 0;
+		for (int i = from; i < from + numberOfCards; i++) {
+			component = component * FACTOR + gameValues[i];
+		}
+		return component;
+	}
+
+	private static int power(int base, int exponent){
+		int result = 1;
+		for (int i = 0; i < exponent; i++) {
+			result *= base;
+		}
+		return result;
+	}
+
+	private static int valueOf(Type type, int component){
+		return type.ordinal() * HandOfCards.DEFAULT_HAND_VALUE + component;
+	}
+}
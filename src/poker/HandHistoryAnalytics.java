@@ -0,0 +1,244 @@
+package poker;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import poker.HandOfCards.Type;
+
+// Totals over a hand history file, e.g. how often each type of final hand wins, how many cards players discard,
+// and how much of the pot each type of starting hand wins on average (its EV, in pots).
+//
+// The file is split into chunks of records which are scanned in parallel on a ForkJoinPool, each with its own
+// cursor and its own Totals of plain arrays, and the totals of the chunks are added together at the end. Records are
+// read straight from the mapped file, so the scan goes as fast as the file can be read.
+public class HandHistoryAnalytics {
+
+	private static long RECORDS_PER_CHUNK = 1 << 22;  // 128 MB of records
+
+	private ForkJoinPool pool;
+	private boolean byStartingHand;  // whether to total by HandIndexer index of the hand dealt as well
+
+	public HandHistoryAnalytics(){
+		this(ForkJoinPool.commonPool(), false);
+	}
+
+	// totalling by starting hand index needs the five card HandIndexer, which takes a second or so to build
+	public HandHistoryAnalytics(ForkJoinPool pool, boolean byStartingHand){
+		this.pool = pool;
+		this.byStartingHand = byStartingHand;
+	}
+
+	public Totals analyse(Path file) throws IOException {
+		try (HandHistoryReader reader = new HandHistoryReader(file)) {
+			return analyse(reader);
+		}
+	}
+
+	public Totals analyse(HandHistoryReader reader){
+		HandIndexer indexer = byStartingHand ? HandIndexer.getFiveCardIndexer() : null;
+		return pool.invoke(new ChunkTask(reader, indexer, 0, reader.getNumberOfRecords()));
+	}
+
+	// splits its records in half until they fit in one chunk
+	private static class ChunkTask extends RecursiveTask<Totals> {
+		private static final long serialVersionUID = 1L;
+
+		private HandHistoryReader reader;
+		private HandIndexer indexer;
+		private long first;
+		private long last;
+
+		ChunkTask(HandHistoryReader reader, HandIndexer indexer, long first, long last){
+			this.reader = reader;
+			this.indexer = indexer;
+			this.first = first;
+			this.last = last;
+		}
+
+		protected Totals compute(){
+			if(last - first > RECORDS_PER_CHUNK){
+				long middle = (first + last) >>> 1;
+				ChunkTask other = new ChunkTask(reader, indexer, middle, last);
+				other.fork();
+				last = middle;
+				Totals totals = compute();
+				totals.add(other.join());
+				return totals;
+			}
+
+			Totals totals = new Totals(indexer != null);
+			try {
+				totals.scan(reader.cursor(first, last), indexer);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return totals;
+		}
+	}
+
+	// counts and shares of pots won, a pot split n ways counting as 1/n of a pot for each of the winners
+	public static class Totals {
+		private static int TYPES = Type.values().length;
+		private static int MAX_DISCARDS = HandOfCards.CARDS_PER_HAND + 1;
+
+		private long records;
+		private long[] finalTypeCounts = new long[TYPES];
+		private double[] finalTypePots = new double[TYPES];
+		private long[] startingTypeCounts = new long[TYPES];
+		private double[] startingTypePots = new double[TYPES];
+		private long[] discardCounts = new long[MAX_DISCARDS];
+		private double[] discardPots = new double[MAX_DISCARDS];
+		private long[] startingHandCounts;   // by HandIndexer index, null when not totalled
+		private double[] startingHandPots;
+
+		Totals(boolean byStartingHand){
+			if(byStartingHand){
+				startingHandCounts = new long[HandIndexer.FIVE_CARD_HANDS];
+				startingHandPots = new double[HandIndexer.FIVE_CARD_HANDS];
+			}
+		}
+
+		private void scan(HandHistoryReader.Cursor cursor, HandIndexer indexer) throws IOException {
+			int[] cards = new int[HandOfCards.CARDS_PER_HAND];
+			int[] canonicalCards = new int[HandOfCards.CARDS_PER_HAND];
+			while(cursor.next()){
+				int winners = cursor.getWinners();
+				double pots = winners == 0 ? 0 : 1.0 / winners;
+				records++;
+
+				int finalType = cursor.getGameValue() / HandOfCards.DEFAULT_HAND_VALUE;
+				finalTypeCounts[finalType]++;
+				finalTypePots[finalType] += pots;
+
+				int discards = cursor.getNumberOfCardsDiscarded();
+				discardCounts[discards]++;
+				discardPots[discards] += pots;
+
+				for (int i = 0; i < cards.length; i++) {
+					cards[i] = cursor.getInitialCard(i);
+				}
+				int startingType = HandEvaluator.evaluate(cards[0], cards[1], cards[2], cards[3], cards[4]) / HandOfCards.DEFAULT_HAND_VALUE;
+				startingTypeCounts[startingType]++;
+				startingTypePots[startingType] += pots;
+
+				if(indexer != null){
+					int index = indexer.getIndex(cards, canonicalCards);
+					startingHandCounts[index]++;
+					startingHandPots[index] += pots;
+				}
+			}
+		}
+
+		private void add(Totals other){
+			records += other.records;
+			add(finalTypeCounts, finalTypePots, other.finalTypeCounts, other.finalTypePots);
+			add(startingTypeCounts, startingTypePots, other.startingTypeCounts, other.startingTypePots);
+			add(discardCounts, discardPots, other.discardCounts, other.discardPots);
+			if(startingHandCounts != null){
+				add(startingHandCounts, startingHandPots, other.startingHandCounts, other.startingHandPots);
+			}
+		}
+
+		private static void add(long[] counts, double[] pots, long[] otherCounts, double[] otherPots){
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] += otherCounts[i];
+				pots[i] += otherPots[i];
+			}
+		}
+
+		public long getRecords(){
+			return records;
+		}
+
+		public long getFinalTypeCount(Type type){
+			return finalTypeCounts[type.ordinal()];
+		}
+
+		// the averages below are 0 when there are no records to average over, as in toString()
+
+		// average share of the pot won by players ending up with this type of hand
+		public double getFinalTypeWinRate(Type type){
+			return finalTypePots[type.ordinal()] / Math.max(1, finalTypeCounts[type.ordinal()]);
+		}
+
+		public long getStartingTypeCount(Type type){
+			return startingTypeCounts[type.ordinal()];
+		}
+
+		// average share of the pot won by players dealt this type of hand
+		public double getStartingTypeEV(Type type){
+			return startingTypePots[type.ordinal()] / Math.max(1, startingTypeCounts[type.ordinal()]);
+		}
+
+		public long getDiscardCount(int cardsDiscarded){
+			return discardCounts[cardsDiscarded];
+		}
+
+		public double getDiscardEV(int cardsDiscarded){
+			return discardPots[cardsDiscarded] / Math.max(1, discardCounts[cardsDiscarded]);
+		}
+
+		// times a hand with this HandIndexer index was dealt, only totalled when asked for
+		public long getStartingHandCount(int index){
+			return startingHandCounts[index];
+		}
+
+		public double getStartingHandEV(int index){
+			return startingHandPots[index] / Math.max(1, startingHandCounts[index]);
+		}
+
+		public String toString(){
+			StringBuilder builder = new StringBuilder();
+			builder.append(String.format("%d records%n", records));
+			builder.append(String.format("%-14s %12s %8s %12s %8s%n", "", "dealt", "EV", "final", "won"));
+			for (Type type: Type.values()) {
+				int i = type.ordinal();
+				builder.append(String.format("%-14s %12d %8.4f %12d %8.4f%n", type, startingTypeCounts[i], startingTypePots[i] / Math.max(1, startingTypeCounts[i]),
+						finalTypeCounts[i], finalTypePots[i] / Math.max(1, finalTypeCounts[i])));
+			}
+			for (int discards = 0; discards < MAX_DISCARDS; discards++) {
+				builder.append(String.format("discarded %d: %.4f of hands, EV %.4f%n", discards, (double) discardCounts[discards] / records,
+						discardPots[discards] / Math.max(1, discardCounts[discards])));
+			}
+			return builder.toString();
+		}
+	}
+
+	// usage: HandHistoryAnalytics [file], see HandHistoryReader for writing one
+	public static void main(String[] args) throws IOException {
+		Path file = Paths.get(args.length > 0 ? args[0] : "hand-history.bin");
+		HandHistoryAnalytics analytics = new HandHistoryAnalytics();
+
+		Totals totals = null;
+		for (int round = 0; round < 3; round++) {
+			long startTime = System.nanoTime();
+			totals = analytics.analyse(file);
+			long timeDifference = System.nanoTime() - startTime;
+			System.out.println(String.format("Scanned %d records in %.3f s, %.0f MB/s", totals.getRecords(), timeDifference / 1e9,
+					totals.getRecords() * HandHistoryWriter.RECORD_SIZE / 1e6 / (timeDifference / 1e9)));
+		}
+		System.out.println(totals);
+
+		// the starting hand dealt most often, after totalling by index
+		HandHistoryAnalytics byStartingHand = new HandHistoryAnalytics(ForkJoinPool.commonPool(), true);
+		totals = byStartingHand.analyse(file);
+		HandIndexer indexer = HandIndexer.getFiveCardIndexer();
+		int best = 0;
+		for (int index = 0; index < indexer.size(); index++) {
+			if(totals.getStartingHandCount(index) > totals.getStartingHandCount(best)){
+				best = index;
+			}
+		}
+		int[] cards = indexer.getCards(best);
+		StringBuilder hand = new StringBuilder();
+		for (int card: cards) {
+			hand.append(PlayingCard.getCard(card)).append(" ");
+		}
+		System.out.println(String.format("starting hand dealt most often: %s(%d times, EV %.4f)", hand, totals.getStartingHandCount(best),
+				totals.getStartingHandEV(best)));
+	}
+}
@@ -0,0 +1,208 @@
+package poker;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Reads back a file written by HandHistoryWriter by memory mapping it and going through the records with a cursor,
+// which reads each field straight from the mapped file, so reading a record doesn't allocate anything.
+//
+// A single mapping can't be more than 2 GB, so a cursor maps its records a segment of up to 1 GB at a time.
+// Cursors over different ranges of records can be used on different threads at the same time.
+public class HandHistoryReader implements Closeable {
+
+	private static long SEGMENT_RECORDS = (1L << 30) / HandHistoryWriter.RECORD_SIZE;
+
+	private FileChannel channel;
+	private long records;
+
+	public HandHistoryReader(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		// the channel is closed if anything goes wrong reading the header, as the caller never gets the reader
+		try {
+			if(channel.size() < HandHistoryWriter.HEADER_SIZE){
+				throw new IOException("Not a hand history file: " + file);
+			}
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HandHistoryWriter.HEADER_SIZE);
+			header.order(ByteOrder.LITTLE_ENDIAN);
+			if(header.getInt(0) != HandHistoryWriter.MAGIC || header.getInt(4) != HandHistoryWriter.VERSION
+					|| header.getInt(8) != HandHistoryWriter.RECORD_SIZE){
+				throw new IOException("Not a hand history file: " + file);
+			}
+			// a partly written last record is left out
+			records = (channel.size() - HandHistoryWriter.HEADER_SIZE) / HandHistoryWriter.RECORD_SIZE;
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	public long getNumberOfRecords(){
+		return records;
+	}
+
+	// a cursor over every record
+	public Cursor cursor(){
+		return new Cursor(0, records);
+	}
+
+	// a cursor over the records from the first up to but not including the last
+	public Cursor cursor(long first, long last){
+		if(first < 0 || last > records || first > last){
+			throw new IndexOutOfBoundsException("Records " + first + " to " + last + " of " + records);
+		}
+		return new Cursor(first, last);
+	}
+
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	// call next() to move to each record in turn, then read its fields with the getters
+	public class Cursor {
+		private long next;          // number of the next record
+		private long last;
+		private long segmentEnd;    // number of the record after the mapped segment
+		private MappedByteBuffer segment;
+		private int position = -HandHistoryWriter.RECORD_SIZE;  // position of the current record in the segment
+
+		private Cursor(long first, long last){
+			this.next = first;
+			this.last = last;
+			this.segmentEnd = first;
+		}
+
+		public boolean next() throws IOException {
+			if(next >= last){
+				return false;
+			}
+			if(next == segmentEnd){
+				long segmentRecords = Math.min(SEGMENT_RECORDS, last - next);
+				long offset = HandHistoryWriter.HEADER_SIZE + next * HandHistoryWriter.RECORD_SIZE;
+				segment = channel.map(FileChannel.MapMode.READ_ONLY, offset, segmentRecords * HandHistoryWriter.RECORD_SIZE);
+				segment.order(ByteOrder.LITTLE_ENDIAN);
+				segmentEnd = next + segmentRecords;
+				position = -HandHistoryWriter.RECORD_SIZE;
+			}
+			position += HandHistoryWriter.RECORD_SIZE;
+			next++;
+			return true;
+		}
+
+		// number of the current record in the file
+		public long getRecordNumber(){
+			return next - 1;
+		}
+
+		public long getHandNumber(){
+			return segment.getLong(position + HandHistoryWriter.HAND_NUMBER);
+		}
+
+		public int getTable(){
+			return segment.getInt(position + HandHistoryWriter.TABLE);
+		}
+
+		public int getSeat(){
+			return segment.get(position + HandHistoryWriter.SEAT);
+		}
+
+		public int getPlayers(){
+			return segment.get(position + HandHistoryWriter.PLAYERS);
+		}
+
+		public int getInitialCard(int index){
+			return segment.get(position + HandHistoryWriter.INITIAL_CARDS + index);
+		}
+
+		public int getDiscardMask(){
+			return segment.get(position + HandHistoryWriter.DISCARD_MASK);
+		}
+
+		public int getNumberOfCardsDiscarded(){
+			return Integer.bitCount(getDiscardMask());
+		}
+
+		public int getFinalCard(int index){
+			return segment.get(position + HandHistoryWriter.FINAL_CARDS + index);
+		}
+
+		public int getGameValue(){
+			return segment.getInt(position + HandHistoryWriter.GAME_VALUE);
+		}
+
+		// number of players sharing the pot if this player won or split it, 0 if they lost
+		public int getWinners(){
+			return segment.get(position + HandHistoryWriter.WINNERS);
+		}
+
+		public boolean isWinner(){
+			return getWinners() > 0;
+		}
+
+		public String toString(){
+			StringBuilder builder = new StringBuilder();
+			builder.append("hand ").append(getHandNumber()).append(" table ").append(getTable()).append(" seat ").append(getSeat()).append(": ");
+			for (int i = 0; i < HandOfCards.CARDS_PER_HAND; i++) {
+				builder.append(PlayingCard.getCard(getInitialCard(i))).append((getDiscardMask() & (1 << i)) != 0 ? "* " : " ");
+			}
+			builder.append("-> ");
+			for (int i = 0; i < HandOfCards.CARDS_PER_HAND; i++) {
+				builder.append(PlayingCard.getCard(getFinalCard(i))).append(" ");
+			}
+			builder.append(HandEvaluator.getHandType(getGameValue()));
+			if(isWinner()){
+				builder.append(getWinners() == 1 ? ", won" : ", split " + getWinners() + " ways");
+			}
+			return builder.toString();
+		}
+	}
+
+	// usage: HandHistoryReader [file] [tables] [hands per table]
+	// plays the hands with a SelfPlaySimulator recording them to the file if it doesn't exist yet, then prints the
+	// first few records and times reading all of them
+	public static void main(String[] args) throws IOException {
+		Path file = Paths.get(args.length > 0 ? args[0] : "hand-history.bin");
+		int tables = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		long handsPerTable = args.length > 2 ? Long.parseLong(args[2]) : 10000;
+
+		if(!Files.exists(file)){
+			SelfPlaySimulator simulator = new SelfPlaySimulator();
+			try (HandHistoryWriter writer = new HandHistoryWriter(file)) {
+				simulator.setHandHistory(writer);
+				SelfPlaySimulator.Report report = simulator.run(tables, handsPerTable, 42, SelfPlaySimulator.Mode.FORK_JOIN);
+				System.out.println(String.format("Recorded %d hands to %s (%d MB) at %.0f hands/sec", report.getHands(), file,
+						Files.size(file) >> 20, report.getHandsPerSecond()));
+			}
+		}
+
+		try (HandHistoryReader reader = new HandHistoryReader(file)) {
+			Cursor cursor = reader.cursor(0, Math.min(5, reader.getNumberOfRecords()));
+			while(cursor.next()){
+				System.out.println(cursor);
+			}
+
+			for (int round = 0; round < 3; round++) {
+				long startTime = System.nanoTime();
+				long wins = 0, cardsDiscarded = 0, checksum = 0;
+				cursor = reader.cursor();
+				while(cursor.next()){
+					if(cursor.isWinner()){
+						wins++;
+					}
+					cardsDiscarded += cursor.getNumberOfCardsDiscarded();
+					checksum += cursor.getGameValue();
+				}
+				long timeDifference = System.nanoTime() - startTime;
+				System.out.println(String.format("Read %d records in %.3f s (%.0f records/sec), %d wins, %.3f cards discarded per hand (checksum %d)",
+						reader.getNumberOfRecords(), timeDifference / 1e9, reader.getNumberOfRecords() * 1e9 / timeDifference, wins,
+						(double) cardsDiscarded / reader.getNumberOfRecords(), checksum));
+			}
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package poker;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Writes a binary log of hands played, one fixed width record for each player in each hand, with the cards they
+// were dealt, the cards they discarded, the cards they ended up with, the game value of their final hand and
+// whether they won. See HandHistoryReader for reading it back.
+//
+// Records are put together in a direct ByteBuffer and written to a FileChannel a buffer full at a time. Several
+// threads can write to the same file, each through its own Buffer from newBuffer(), whole buffers of records
+// being written one at a time so records from different threads are never mixed up.
+//
+// File layout, all little endian: a 16 byte header (magic number, version, record size, 0) then the records.
+// Each record is RECORD_SIZE bytes:
+//
+//     0  long  hand number (counted per table)
+//     8  int   table
+//    12  int   game value of the final hand
+//    16  byte  seat
+//    17  byte  discard mask, bit i set if the card at position i of the dealt hand was discarded
+//    18  byte  number of players sharing the pot if this player won or split it, 0 if they lost
+//    19  byte  number of players at the table
+//    20  5 bytes  card ids of the hand dealt, in HandOfCards order
+//    25  5 bytes  card ids of the final hand
+//    30  2 bytes  unused, 0
+public class HandHistoryWriter implements Closeable {
+
+	public static int MAGIC = 0x48484953;  // "HHIS"
+	public static int VERSION = 1;
+	public static int HEADER_SIZE = 16;
+	public static int RECORD_SIZE = 32;
+
+	static int HAND_NUMBER = 0;
+	static int TABLE = 8;
+	static int GAME_VALUE = 12;
+	static int SEAT = 16;
+	static int DISCARD_MASK = 17;
+	static int WINNERS = 18;
+	static int PLAYERS = 19;
+	static int INITIAL_CARDS = 20;
+	static int FINAL_CARDS = 25;
+
+	private static int RECORDS_PER_BUFFER = 4096;
+
+	private FileChannel channel;
+	private Buffer buffer;  // used by the record methods of the writer itself
+
+	// creates the file, or empties it if it already exists
+	public HandHistoryWriter(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(0);
+		header.flip();
+		// the channel is closed if the header can't be written, as the caller never gets the writer
+		try {
+			writeFully(header);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+		buffer = new Buffer();
+	}
+
+	// a buffer of records for one thread, records are written to the file when it is full or flushed
+	public Buffer newBuffer(){
+		return new Buffer();
+	}
+
+	// records a player's hand from the writer's own buffer
+	public synchronized void record(long handNumber, int table, int seat, int players, int[] initialCards, int discardMask,
+			HandOfCards finalHand, int gameValue, int winners) throws IOException {
+		buffer.record(handNumber, table, seat, players, initialCards, discardMask, finalHand, gameValue, winners);
+	}
+
+	public synchronized void flush() throws IOException {
+		buffer.flush();
+	}
+
+	// flushes the writer's own buffer and closes the file, other buffers need to be flushed first
+	public synchronized void close() throws IOException {
+		buffer.flush();
+		channel.close();
+	}
+
+	// whole buffers are written one at a time
+	private synchronized void writeFully(ByteBuffer records) throws IOException {
+		while(records.hasRemaining()){
+			channel.write(records);
+		}
+	}
+
+	public class Buffer {
+		private ByteBuffer records = ByteBuffer.allocateDirect(RECORD_SIZE * RECORDS_PER_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+
+		private Buffer(){
+		}
+
+		public void record(long handNumber, int table, int seat, int players, int[] initialCards, int discardMask,
+				HandOfCards finalHand, int gameValue, int winners) throws IOException {
+			int position = records.position();
+			records.putLong(position + HAND_NUMBER, handNumber);
+			records.putInt(position + TABLE, table);
+			records.putInt(position + GAME_VALUE, gameValue);
+			records.put(position + SEAT, (byte) seat);
+			records.put(position + DISCARD_MASK, (byte) discardMask);
+			records.put(position + WINNERS, (byte) winners);
+			records.put(position + PLAYERS, (byte) players);
+			for (int i = 0; i < HandOfCards.CARDS_PER_HAND; i++) {
+				records.put(position + INITIAL_CARDS + i, (byte) initialCards[i]);
+				records.put(position + FINAL_CARDS + i, (byte) finalHand.getCardId(i));
+			}
+			records.putShort(position + FINAL_CARDS + HandOfCards.CARDS_PER_HAND, (short) 0);
+			records.position(position + RECORD_SIZE);
+
+			if(!records.hasRemaining()){
+				flush();
+			}
+		}
+
+		public void flush() throws IOException {
+			records.flip();
+			writeFully(records);
+			records.clear();
+		}
+	}
+}
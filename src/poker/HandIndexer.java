@@ -0,0 +1,272 @@
+package poker;
+
+import java.util.Arrays;
+
+// Gives every set of cards a small dense index which is the same for all sets which only differ by their suits,
+// e.g. AH KH and AS KS, so tables and caches can be plain arrays indexed by it instead of maps of objects.
+//
+// Renaming the suits in order of their 13 bit rank masks, largest mask first, gives every set of cards a canonical
+// form, the rank masks of the renamed suits packed 13 bits each into a long. Comparing the masks as numbers puts
+// the suit with the highest card first (then the next highest, and so on), not the suit with the most cards. An
+// indexer for hands of a given size keeps the sorted canonical forms of every hand of that size, the index of a
+// hand being the position of its canonical form. The 2,598,960 five card hands come down to 134,459 indexes.
+//
+// Starting hands have their own fixed layout (see getStartingHandIndex), 169 indexes on a 13 x 13 grid, which is
+// what the preflop tables are stored in.
+public class HandIndexer {
+
+	public static int STARTING_HANDS = 169;
+	public static int FIVE_CARD_HANDS = 134459;
+
+	private static int SUITS = 4;
+	private static int RANKS = 13;
+	private static int RANK_MASK = (1 << RANKS) - 1;
+
+	private int cardsPerHand;
+	private long[] canonicalKeys;  // sorted, the index of a hand is the position of its key
+
+	// builds the five card indexer the first time it is asked for
+	private static class FiveCardHolder {
+		static final HandIndexer INDEXER = new HandIndexer(HandOfCards.CARDS_PER_HAND);
+	}
+
+	public static HandIndexer getFiveCardIndexer(){
+		return FiveCardHolder.INDEXER;
+	}
+
+	// goes through every hand of this size to find the canonical forms, for big hands this takes a while
+	// (about a second for 5 cards) and a lot of memory, so indexers should be shared
+	public HandIndexer(int cardsPerHand){
+		if(cardsPerHand < 1 || cardsPerHand > 7){
+			throw new IllegalArgumentException("Can only index hands of 1 to 7 cards");
+		}
+		this.cardsPerHand = cardsPerHand;
+
+		long[] keys = new long[(int) combinations(PlayingCard.NUMBER_OF_CARDS, cardsPerHand)];
+		int[] cards = new int[cardsPerHand];
+		int[] canonicalCards = new int[cardsPerHand];
+		for (int i = 0; i < cardsPerHand; i++) {
+			cards[i] = i;
+		}
+		int count = 0;
+		while(true){
+			keys[count++] = getCanonicalKey(cards, canonicalCards);
+
+			// moves on to the next combination of cards in order
+			int i = cardsPerHand - 1;
+			while(i >= 0 && cards[i] == PlayingCard.NUMBER_OF_CARDS - cardsPerHand + i){
+				i--;
+			}
+			if(i < 0){
+				break;
+			}
+			cards[i]++;
+			for (int j = i + 1; j < cardsPerHand; j++) {
+				cards[j] = cards[j - 1] + 1;
+			}
+		}
+
+		Arrays.sort(keys);
+		int distinct = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if(i == 0 || keys[i] != keys[i - 1]){
+				keys[distinct++] = keys[i];
+			}
+		}
+		canonicalKeys = Arrays.copyOf(keys, distinct);
+	}
+
+	public int getCardsPerHand(){
+		return cardsPerHand;
+	}
+
+	// number of indexes, the indexes go from 0 to size() - 1
+	public int size(){
+		return canonicalKeys.length;
+	}
+
+	public int getIndex(int[] cards){
+		return getIndex(cards, new int[cards.length]);
+	}
+
+	// also writes the canonical card for each card of the hand to canonicalCards, the cards of the hand
+	// returned by getCards(index) are the same cards in order of id
+	public int getIndex(int[] cards, int[] canonicalCards){
+		if(cards.length != cardsPerHand){
+			throw new IllegalArgumentException("Need " + cardsPerHand + " cards, not " + cards.length);
+		}
+		long key = getCanonicalKey(cards, canonicalCards);
+		int index = Arrays.binarySearch(canonicalKeys, key);
+		if(index < 0){
+			throw new IllegalArgumentException("The same card can't be in a hand twice");
+		}
+		return index;
+	}
+
+	public int getIndex(PlayingCard[] cards){
+		int[] cardIds = new int[cards.length];
+		for (int i = 0; i < cards.length; i++) {
+			cardIds[i] = cards[i].getId();
+		}
+		return getIndex(cardIds);
+	}
+
+	public int getIndex(HandOfCards hand){
+		int[] cardIds = new int[HandOfCards.CARDS_PER_HAND];
+		for (int i = 0; i < cardIds.length; i++) {
+			cardIds[i] = hand.getCardId(i);
+		}
+		return getIndex(cardIds);
+	}
+
+	// the canonical hand with this index, in order of id
+	public int[] getCards(int index){
+		long key = canonicalKeys[index];
+		int[] cards = new int[cardsPerHand];
+		int count = 0;
+		for (int id = 0; id < PlayingCard.NUMBER_OF_CARDS; id++) {
+			int suit = PlayingCard.getSuitIndex(id);
+			int rankMask = (int) (key >>> ((SUITS - 1 - suit) * RANKS)) & RANK_MASK;
+			if((rankMask & (1 << PlayingCard.getRankIndex(id))) != 0){
+				cards[count++] = id;
+			}
+		}
+		return cards;
+	}
+
+	// renames the suits in order of their rank masks as numbers, largest first, so the suit holding the highest
+	// card (then the next highest, and so on) comes first whatever the number of cards, and returns the rank masks
+	// of the renamed suits packed 13 bits each, first suit highest. Sets of cards which only differ by their
+	// suits get the same key, and the canonical card for each card is written to canonicalCards
+	static long getCanonicalKey(int[] cards, int[] canonicalCards){
+		int[] rankMasks = new int[SUITS];
+		for (int card: cards) {
+			rankMasks[PlayingCard.getSuitIndex(card)] |= 1 << PlayingCard.getRankIndex(card);
+		}
+
+		// sorts the suits by rank mask, largest first, suits with the same mask can go either way round
+		// as the cards are the same whichever way they are named
+		int[] suitOrder = {0, 1, 2, 3};
+		for (int i = 1; i < SUITS; i++) {
+			int suit = suitOrder[i];
+			int j = i - 1;
+			while(j >= 0 && rankMasks[suitOrder[j]] < rankMasks[suit]){
+				suitOrder[j + 1] = suitOrder[j];
+				j--;
+			}
+			suitOrder[j + 1] = suit;
+		}
+
+		int[] newSuit = new int[SUITS];
+		long key = 0;
+		for (int i = 0; i < SUITS; i++) {
+			newSuit[suitOrder[i]] = i;
+			key = (key << RANKS) | rankMasks[suitOrder[i]];
+		}
+		for (int i = 0; i < cards.length; i++) {
+			canonicalCards[i] = PlayingCard.getId(PlayingCard.getRankIndex(cards[i]), newSuit[PlayingCard.getSuitIndex(cards[i])]);
+		}
+		return key;
+	}
+
+	private static long combinations(int n, int k){
+		long result = 1;
+		for (int i = 0; i < k; i++) {
+			result = result * (n - i) / (i + 1);
+		}
+		return result;
+	}
+
+	//**************************************************************************************************
+	// Starting hands **********************************************************************************
+	//**************************************************************************************************
+
+	// the index of a pair of hole cards, pairs are on the diagonal of a 13 x 13 grid (rank index * 14),
+	// suited hands are above it (high rank row, low rank column) and offsuit hands below it
+	public static int getStartingHandIndex(int card1, int card2){
+		int rank1 = PlayingCard.getRankIndex(card1);
+		int rank2 = PlayingCard.getRankIndex(card2);
+		int high = Math.max(rank1, rank2);
+		int low = Math.min(rank1, rank2);
+		if(PlayingCard.getSuitIndex(card1) == PlayingCard.getSuitIndex(card2)){
+			return high * RANKS + low;
+		}
+		return low * RANKS + high;
+	}
+
+	public static int getStartingHandIndex(PlayingCard card1, PlayingCard card2){
+		return getStartingHandIndex(card1.getId(), card2.getId());
+	}
+
+	// a pair of hole cards with this index, suited hands are in the first suit, the others in the first two
+	public static int[] getStartingHandCards(int index){
+		int row = index / RANKS;
+		int column = index % RANKS;
+		int high = Math.max(row, column);
+		int low = Math.min(row, column);
+		return new int[]{PlayingCard.getId(high, 0), PlayingCard.getId(low, row > column ? 0 : 1)};
+	}
+
+	// number of pairs of hole cards with this index, 6 for a pair, 4 suited and 12 offsuit
+	public static int getStartingHandCombinations(int index){
+		int row = index / RANKS;
+		int column = index % RANKS;
+		if(row == column){
+			return 6;
+		}
+		return row > column ? 4 : 12;
+	}
+
+	// a name for the index, e.g. "AKs", "QQ" or "72o"
+	public static String getStartingHandName(int index){
+		int row = index / RANKS;
+		int column = index % RANKS;
+		String high = PlayingCard.getCard(PlayingCard.getId(Math.max(row, column), 0)).getType();
+		String low = PlayingCard.getCard(PlayingCard.getId(Math.min(row, column), 0)).getType();
+		if(row == column){
+			return high + low;
+		}
+		return high + low + (row > column ? "s" : "o");
+	}
+
+	public static void main(String[] args) {
+		long startTime = System.nanoTime();
+		HandIndexer indexer = getFiveCardIndexer();
+		System.out.println(indexer.size() + " five card indexes, built in " + (System.nanoTime() - startTime) / 1000000 + " ms");
+
+		// every index gives back a hand with the same index
+		int mismatches = 0;
+		for (int index = 0; index < indexer.size(); index++) {
+			if(indexer.getIndex(indexer.getCards(index)) != index){
+				mismatches++;
+			}
+		}
+		System.out.println(mismatches + " indexes which don't give back the same index");
+
+		// the same hand in different suits
+		PlayingCard[] hearts = {PlayingCard.getCard("A", PlayingCard.HEARTS), PlayingCard.getCard("K", PlayingCard.HEARTS),
+				PlayingCard.getCard("Q", PlayingCard.HEARTS), PlayingCard.getCard("7", PlayingCard.SPADES), PlayingCard.getCard("7", PlayingCard.CLUBS)};
+		PlayingCard[] clubs = {PlayingCard.getCard("A", PlayingCard.CLUBS), PlayingCard.getCard("K", PlayingCard.CLUBS),
+				PlayingCard.getCard("Q", PlayingCard.CLUBS), PlayingCard.getCard("7", PlayingCard.DIAMONDS), PlayingCard.getCard("7", PlayingCard.HEARTS)};
+		System.out.println("AH KH QH 7S 7C " + indexer.getIndex(hearts) + ", AC KC QC 7D 7H " + indexer.getIndex(clubs));
+
+		// every one of the 1326 pairs of hole cards, the combinations of each starting hand should add up
+		int[] counts = new int[STARTING_HANDS];
+		for (int card1 = 0; card1 < PlayingCard.NUMBER_OF_CARDS; card1++) {
+			for (int card2 = card1 + 1; card2 < PlayingCard.NUMBER_OF_CARDS; card2++) {
+				counts[getStartingHandIndex(card1, card2)]++;
+			}
+		}
+		mismatches = 0;
+		for (int index = 0; index < STARTING_HANDS; index++) {
+			int[] cards = getStartingHandCards(index);
+			if(counts[index] != getStartingHandCombinations(index) || getStartingHandIndex(cards[0], cards[1]) != index){
+				mismatches++;
+			}
+		}
+		System.out.println(mismatches + " starting hands which don't match, e.g. " + getStartingHandName(getStartingHandIndex(hearts[0], hearts[1])));
+
+		// the general indexer for 2 cards finds the same 169
+		System.out.println(new HandIndexer(2).size() + " two card indexes");
+	}
+}
@@ -1,6 +1,5 @@
 package poker;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.TreeMap;
@@ -10,7 +9,7 @@ public class HandOfCards {
 	public static enum Type {HighHand, OnePair, TwoPair, ThreeOfAKind, Straight, Flush, FullHouse, FourOfAKind, StraightFlush, RoyalFlush};
 	
 	
-	private static int DEFAULT_HAND_VALUE = 1000000;
+	static final int DEFAULT_HAND_VALUE = 1000000;
 	
 	// defines default value for each hand type, based on their order in HandOfCards enum Type (from 0-9)
 	// therefore default hand values range from 0 (for high hand) to 9000 (for royal flush) 
@@ -32,6 +31,9 @@ public class HandOfCards {
 	public static int DISCARD = 100;
 	
 	private static int TYPES_OF_CARD = 13; // A 2 3 ... J Q K
+	private static int ACE = 14;  // game value of an Ace
+	private static int SUITS = 4;
+	private static int TEN_TO_ACE_MASK = 0x1F00;  // rank mask of 10 J Q K A
 	private static int FALSE = -1;
 	private PlayingCard[] cards = new PlayingCard[CARDS_PER_HAND];
 	private DeckOfCards deckOfCards;
@@ -39,26 +41,45 @@ public class HandOfCards {
 	private Integer indexOfFlushBuster;
 	private Integer indexOfStraightBreaker;
 	
+	// the game value, type and discard probabilities are worked out once and then kept until the cards
+	// in the hand change, so asking for them again is just a field read
+	private boolean classified = false;
+	private int gameValue;
+	private Type handType;
+	private boolean discardProbabilitiesWorkedOut = false;
+	private int[] discardProbabilities = new int[CARDS_PER_HAND];
+	
+	// these are kept up to date as each card comes into or leaves the hand, so they never need to be recounted
 	private int[] gameValuesInHandCountArray = new int[TYPES_OF_CARD]; // array which stores the number of each type of card in a hand
+	private int[] suitsInHandCountArray = new int[SUITS];               // number of each suit in the hand, by PlayingCard suit index
+	private int rankMask = 0;                                           // bit (game value - 2) is set for each type of card in the hand
 	
 	// main constructor which deals 5 cards into HandOfCards
 	public HandOfCards(DeckOfCards deckOfCards){
 		this.deckOfCards = deckOfCards;
 		for(int i = 0; i < CARDS_PER_HAND; i++){
 			cards[i] = deckOfCards.dealNext();
+			addToCounts(cards[i]);
 		}
 		sort();
-		
-		// returns an array where each item in the array is an int
-		// representing the number of that type of card in the hand
-		gameValuesInHandCountArray = getGameValueCountInHand();		
 	}
 	
 	// Extra constructor for testing specific types of hand
 	public HandOfCards(PlayingCard[] cards){
 		this.cards = cards;
+		for(int i = 0; i < CARDS_PER_HAND; i++){
+			addToCounts(cards[i]);
+		}
+		sort();
+	}
+	
+	// constructor for a hand given as card ids
+	public HandOfCards(int[] cardIds){
+		for(int i = 0; i < CARDS_PER_HAND; i++){
+			cards[i] = PlayingCard.getCard(cardIds[i]);
+			addToCounts(cards[i]);
+		}
 		sort();
-		gameValuesInHandCountArray = getGameValueCountInHand();		
 	}
 	
 	public DeckOfCards getDeckOfCards(){
@@ -66,76 +87,113 @@ public class HandOfCards {
 	}
 	
 	
-	// returns a card from the hand
+	// returns a card from the hand, leaving its position empty until receiveCard is called
 	public PlayingCard returnCard(int index){
 		PlayingCard card = cards[index];
 		cards[index] = null;
+		if(card != null){
+			removeFromCounts(card);
+		}
+		invalidate();
 		return card;
 		
 	}
 	
+	// puts a card into the first empty position in the hand, the hand is not sorted again
+	// until sort() is called, so the positions of the other cards don't change
+	public void receiveCard(PlayingCard card) {
+		for (int i = 0; i < cards.length; i++) {
+			if(cards[i] == null){
+				cards[i] = card;
+				addToCounts(card);
+				invalidate();
+				break;
+			}
+		}
+	}
+	
+	private void addToCounts(PlayingCard card){
+		int rankIndex = card.getGameValue() - 2;
+		gameValuesInHandCountArray[rankIndex]++;
+		suitsInHandCountArray[PlayingCard.getSuitIndex(card.getId())]++;
+		rankMask |= 1 << rankIndex;
+	}
+	
+	private void removeFromCounts(PlayingCard card){
+		int rankIndex = card.getGameValue() - 2;
+		suitsInHandCountArray[PlayingCard.getSuitIndex(card.getId())]--;
+		if(--gameValuesInHandCountArray[rankIndex] == 0){
+			rankMask &= ~(1 << rankIndex);
+		}
+	}
+	
+	// bit (game value - 2) is set for each type of card in the hand
+	public int getRankMask(){
+		return rankMask;
+	}
+	
+	// number of cards of a type in the hand, by game value
+	public int getCountOfGameValue(int gameValue){
+		return gameValuesInHandCountArray[gameValue - 2];
+	}
+	
+	// number of cards of a suit in the hand, by PlayingCard suit index
+	public int getCountOfSuit(int suitIndex){
+		return suitsInHandCountArray[suitIndex];
+	}
+	
+	// forgets everything worked out about the hand, called whenever its cards change
+	private void invalidate(){
+		classified = false;
+		clearDrawInformation();
+	}
+	
+	// forgets what depends on the position of the cards in the hand
+	private void clearDrawInformation(){
+		discardProbabilitiesWorkedOut = false;
+		indexOfFlushBuster = null;
+		indexOfStraightBreaker = null;
+	}
+	
 	public PlayingCard getCard(int index){
 		return cards[index];
 	}
 	
-	// based on bubble sort, this method orders the cards from highest to lowest based on game value
+	public int getCardId(int index){
+		return cards[index].getId();
+	}
+	
+	// based on insertion sort, this method orders the cards from highest to lowest based on game value
+	// after a discard only the new cards are out of place, so only they get moved
 	public void sort(){
-		boolean sorted = false;   
+		clearDrawInformation();
 		
-		// keeps looping until cards in in correct order
-		while (!sorted){
-			sorted= true; 
-			PlayingCard temp;   
+		for(int i = 1; i < cards.length; i++){
+			PlayingCard card = cards[i];
+			int j = i - 1;
 			
-			for(int i=0;  i < cards.length-1;  i++){
-				
-				if(cards[i].getGameValue() < cards[i+1].getGameValue()){   
-					// if first card is lower then next card in array, then its not yet sorted
-					// so we set flag to false
-					sorted = false;
-					// then swap the cards positions in array
-					temp = cards[i];   
-					cards[i] = cards[i+1];
-					cards[i+1]= temp;
-				} 
-			} 
-		}			
+			// moves lower cards up one position until we find where this card goes
+			while(j >= 0 && cards[j].getGameValue() < card.getGameValue()){
+				cards[j + 1] = cards[j];
+				j--;
+			}
+			cards[j + 1] = card;
+		}
 	}
 
-	// hand is a royal flush if it is straight flush and the last card in the array is a 10, 
-	// since cards are sorted from highest to lowest, then 10 must be last card
+	// hand is a royal flush if it is straight flush and its cards are 10 J Q K A
 	public boolean isRoyalFlush(){
-		return cards[CARDS_PER_HAND-1].getType() == "10" && isStraightFlush();
+		return rankMask == TEN_TO_ACE_MASK && isStraightFlush();
 	} 
 	
 	// hand is a straight flush if it is straight and a flush
 	public boolean isStraightFlush(){
-		boolean hasStraightFlag = true;
-		
-		// loops through hand and checks if each card one higher than the next card
-		for(int i = 0, j = 1; i < CARDS_PER_HAND - 1; i++, j++){
-			PlayingCard card1 = cards[i];
-			PlayingCard card2 = cards[j];
-			
-			int gameValue1 = card1.getGameValue(); 
-			int gameValue2 = card2.getFaceValue();
-			
-			// this accounts for runs from ACE to 5
-			// which after sorting will be in the order: A 5 4 3 2
-			if(card1.getType() == "A" && gameValue2 == 5){ 
-				continue;
-			}
-			
-			// checks if the the first card is one higher than the next card
-			if(gameValue1 == gameValue2 + 1){ 
-				continue;
-			}else{
-				// if not then we can set flag to false and break
-				hasStraightFlag = false;
-				break;
-			}
-		}	
-		return hasStraightFlag && isFlush();
+		return hasStraight() && isFlush();
+	}
+	
+	// checks for 5 different types of card in a run, a run from ACE to 5 counts
+	private boolean hasStraight(){
+		return Integer.bitCount(rankMask) == CARDS_PER_HAND && HandEvaluator.getHighCardInStraight(rankMask) != FALSE;
 	}
 	
 	
@@ -180,54 +238,18 @@ public class HandOfCards {
 	}
 	
 	public boolean isStraight(){
-		boolean isStraightFlag = true;
-		
-		// loops through hand and checks if each card one higher than the next card
-		for(int i = 0, j = 1; i < CARDS_PER_HAND - 1; i++, j++){
-			PlayingCard card1 = cards[i];
-			PlayingCard card2 = cards[j];
-			
-			int gameValue1 = card1.getGameValue(); 
-			int gameValue2 = card2.getFaceValue();
-			
-			// this accounts for runs from ACE to 5
-			// which after sorting will be in the order: A 5 4 3 2
-			if(card1.getType() == "A" && gameValue2 == 5){ 
-				continue;
-			}
-			
-			// checks if the the first card is one higher than the next card
-			if(gameValue1 == gameValue2 + 1){ 
-				continue;
-			}else{
-				// if not then we can set flag to false and break
-				isStraightFlag = false;
-				break;
-			}
-		}
-		return isStraightFlag && !isFlush();
+		return hasStraight() && !isFlush();
 	}
 	
 	
+	// checks if all the cards are of the same suit
 	public boolean isFlush(){
-		boolean isFlushFlag = true;
-		
-		// takes first card from the hand
-		PlayingCard card = cards[0];
-		
-		// loops through remaining cards
-		for(int i = 1; i < CARDS_PER_HAND; i++){
-			PlayingCard otherCard = cards[i];
-			
-			// checks is the suit of each remaining card the same as the suit of the first card
-			if(card.getSuit() != otherCard.getSuit()){
-				// if not we set flag to false and break, since all cards aren't of the same suit
-				isFlushFlag = false;
-				break;
+		for(int suitIndex = 0; suitIndex < SUITS; suitIndex++){
+			if(suitsInHandCountArray[suitIndex] == CARDS_PER_HAND){
+				return true;
 			}
 		}
-		
-		return isFlushFlag;
+		return false;
 	}
 	
 	public boolean isTwoPair(){
@@ -287,219 +309,61 @@ public class HandOfCards {
 		return handString;
 	}
 	
-	// returns an array where each item in the array is an int
-	// representing the number of that type of card in the hand
-	private int[] getGameValueCountInHand(){
-		int[] gameValuesCountInHandArray = new int[TYPES_OF_CARD];
-		
-		for (int i = 0; i < CARDS_PER_HAND; i++) {
-			// index subtracted by two since game values go from 2-14, and our array's index's goes from 0-12
-			int index = cards[i].getGameValue()-2;  
-			// increments the number of this cards game value by 1
-			gameValuesCountInHandArray[index]++;  
-		}
-		return gameValuesCountInHandArray;
-	}
-	
 	// returns an integer value represeting the game value of a hand of cards, which can be used to
 	// order and two hands of cards according to the rules of poker
+	// the value is looked up in the precomputed tables of HandEvaluator rather than checking each type of hand in turn
 	public int getGameValue(){
-		int factor = 14;  // is used to multiple with game value of cards in hand
-	
-		if(isRoyalFlush()){
-			// all royal flushes are equal value, so no additional game value component needed
-			
-			int defaultValue = ROYAL_FLUSH_DEFAULT;
-			int additionalGameValueComponent = 0;  
-			return defaultValue + additionalGameValueComponent;
+		if(!classified){
+			classify();
 		}
-		else if(isStraightFlush()){
-			// straight flush is decided by the hand with runs to the highest value
-			
-			int defaultValue = STRAIGHT_FLUSH_DEFAULT;
-			PlayingCard highCardInStraightFlush = cards[0]; // gets the highest card in the straight flush (since hand is sorted from high to low)
-			int additionalGameValueComponent = (int) Math.pow(highCardInStraightFlush.getGameValue(), 5);    
-			return defaultValue + additionalGameValueComponent;
-		}		
-		else if(isFourOfAKind()){
-			// four of a kinds are distinguished by the game value of their 4 of a kind card
-			
-			int defaultValue = FOUR_OF_A_KIND_DEFAULT;
-			int gameValueOfFourOfAKindCard = getGameValueOfCardWithCount(4);
-			int additionalGameValueComponent = (int) Math.pow(gameValueOfFourOfAKindCard, 4); 
-			return defaultValue + additionalGameValueComponent;
-		}		
-		
-		else if(isFullHouse()){ 
-			// Full houses are ranked by the highest Three of a kind card, 
-			// It is not possible for two players to have the same 3 of a kind, so we can simply rank the hands by the game value multiplied by a factor 
-			// and ignore the pair
-			
-			int defaultValue = FULL_HOUSE_DEFAULT;
-			int gameValueOfThreeOfAKind = getGameValueOfCardWithCount(3);
-			int additionalGameValueComponent = ((int) Math.pow(factor, 3)) * gameValueOfThreeOfAKind;
-			return defaultValue + additionalGameValueComponent; 
-		}	
-		
-		else if(isFlush()){
-			// flushes are ranked by highest card in flush, if there is a match then we check the next card, then the next etc.
-			// To rank these properly, we multiple the game value by the cards from high to low by a factor raised to a power, which reduces as we go down the hand to
-			// the lower cards, this gives us a correct additionalGameValueComponent
-			
-			int defaultValue = FLUSH_DEFAULT;
-			int additionalGameValueComponent = 0;
-			
-			int power = 4;
-			for (int i = 0; i < cards.length; i++) {
-				additionalGameValueComponent += ((int) Math.pow(factor, power--)) * cards[i].getGameValue();
-			}
-             
-			return defaultValue + additionalGameValueComponent;
-		}		
-		
-		else if(isStraight()){
-			// Straight's are distinguished by the game value of their highest card
-			
-			int defaultValue = STRAIGHT_DEFAULT;
-			PlayingCard highCardInStraight = cards[0]; 
-			int additionalGameValueComponent = (int) Math.pow(highCardInStraight.getGameValue(), 5);  
-			return defaultValue + additionalGameValueComponent;
-		}	
-		
-		else if(isThreeOfAKind()){
-			// Three of a kind hands are ranked by game value of the three of a kind card, 
-			// It is not possible for two players to have the same 3 of a kind, so we can simply rank the hands by the game value multiplied by a factor 
-			
-			int defaultValue = THREE_OF_A_KIND_DEFAULT;
-			int gameValueOfThreeOfAKind = getGameValueOfCardWithCount(3);
-			int additionalGameValueComponent = ((int) Math.pow(factor, 3)) * gameValueOfThreeOfAKind;;
-			return defaultValue + additionalGameValueComponent;
-		}	
-		else if(isTwoPair()){
-			// Two pair hands are ranked by game value of high pair, then low pair, if there is a match then we check the remaining card. 
-			// To rank these properly, we multiple the game value of high pair by the factor squared, then the lower pair by the factor, 
-			// then we add the game value of the remaining card				
-			
-			int defaultValue = TWO_PAIR_DEFAULT;
-			int gameValueOfHighPairCard = 0;
-			
-			// loops through games value count array and gets game value of high pair
-			for (int cardIndex = TYPES_OF_CARD - 1; cardIndex >= 0; cardIndex--) {
-				if(gameValuesInHandCountArray[cardIndex] == 2){
-					gameValueOfHighPairCard = cardIndex + 2; // adds two to card index as array goes from 0-12, while card game values go from 2-14
-					break;
-				}
-			}
-			
-			int gameValueOfLowPairCard = getGameValueOfCardWithCount(2); // returns low pair since it checks from start of array of game value card counts
-			
-			int gameValueOfOtherCard = 0;
-			for (int i = 0; i < cards.length; i++) {
-				if(cards[i].getGameValue() != gameValueOfHighPairCard || cards[i].getGameValue() != gameValueOfLowPairCard){
-					gameValueOfOtherCard = cards[i].getGameValue();
-					break;
-				}
-			}
-			
-			int additionalGameValueComponent = ((int) Math.pow(factor, 2)) * gameValueOfHighPairCard + factor * gameValueOfLowPairCard + gameValueOfOtherCard;
-			return defaultValue + additionalGameValueComponent; 
-		}		
-		else if(isOnePair()){
-			// One pair hands are ranked by game value of pair, if there is a match then we check the next card, then the next etc.
-			// To rank these properly, we multiple the game value of the pair by a factor raised to a power which reduces as we go down the hand to
-			// the lower cards, this gives us a correct additionalGameValueComponent	
-			
-			int power = 3;
-			
-			int defaultValue = ONE_PAIR_DEFAULT;
-			int gameValueOfPairCard = getGameValueOfCardWithCount(2);
-						
-			int additionalGameValueComponent = ((int) Math.pow(factor, power--)) * gameValueOfPairCard;
-			
-			for (int i = 0; i < cards.length; i++) {
-				if(cards[i].getGameValue() !=  gameValueOfPairCard){
-					additionalGameValueComponent += ((int) Math.pow(factor, power--)) * cards[i].getGameValue();	
-				}
-				
-			}
-             
-			return defaultValue + additionalGameValueComponent; 
-		}		
-		else{
-			// It is high hand
-			// high hands are ranked by highest card, if there is a match then we check the next card, then the next etc.
-			// To rank these properly, we multiple the game value by the cards from high to low by a factor raised to a power, which reduces as we go down the hand to
-			// the lower cards, this gives us a correct additionalGameValueComponent
-			
-			int defaultValue = HIGH_HAND_DEFAULT;
-			int additionalGameValueComponent = 0;
-			
-			int power = 4;
-			for (int i = 0; i < cards.length; i++) {
-				additionalGameValueComponent += ((int) Math.pow(factor, power--)) * cards[i].getGameValue();
-			}
-			return defaultValue + additionalGameValueComponent;             
-		}		
+		return gameValue;
 	}
 	
-	// returns the game value of the card which has a certain count in hand
-	// i.e. if a hand has 3 Aces, then this method returns 14
-	private int getGameValueOfCardWithCount(int countOfCardInHand){
-		
-		// loops through array and checks if there are four of any type
-		for (int cardIndex = 0; cardIndex < TYPES_OF_CARD; cardIndex++) {
-			if(gameValuesInHandCountArray[cardIndex] == countOfCardInHand){
-				return cardIndex + 2; // adds two to card index as array goes from 0-12, while card game values go from 2-14
-			}
-		}
-		return 0;
-	}	
-	
 	
 	// checks the type of hand
 	public Type getHandType(){
-			if(isRoyalFlush()){
-				return HandOfCards.Type.RoyalFlush;
-			}		
-			else if(isStraightFlush()){
-				return HandOfCards.Type.StraightFlush;
-			}			
-			else if(isFourOfAKind()){
-				return HandOfCards.Type.FourOfAKind;
-			}					
-			else if(isFullHouse()){
-				return HandOfCards.Type.FullHouse;
-			}	
-			else if(isFlush()){
-				return HandOfCards.Type.Flush;
-			}
-			else if(isStraight()){
-				return HandOfCards.Type.Straight;
-			}	
-			else if(isThreeOfAKind()){
-				return HandOfCards.Type.ThreeOfAKind;
-			}	
-			else if(isTwoPair()){
-				return HandOfCards.Type.TwoPair;
-			}
-			else if(isOnePair()){
-				return HandOfCards.Type.OnePair;
-			}
-			else{
-				return HandOfCards.Type.HighHand;
-			}						
+		if(!classified){
+			classify();
+		}
+		return handType;
 	}	
 	
+	private void classify(){
+		long startTime = PokerMetrics.start();
+		PokerEvents.EvaluateEvent event = new PokerEvents.EvaluateEvent();
+		event.begin();
+		gameValue = HandEvaluator.evaluate(cards);
+		handType = HandEvaluator.getHandType(gameValue);
+		classified = true;
+		PokerMetrics.EVALUATE.stop(startTime);
+		if(event.shouldCommit()){
+			event.handType = handType.name();
+			event.gameValue = gameValue;
+			event.commit();
+		}
+	}
+	
 	public int getDiscardProbability(int cardPosition){
-		int discardProbability = DISCARD;
-		
 		// If invalid card position is invalid
 		if(cardPosition < 0 || cardPosition > 4){ 
-			return discardProbability;	
+			return DISCARD;	
 		}
 		
-		
-		Type handType = getHandType();
+		// works out the probability for every card the first time any card is asked for
+		long startTime = PokerMetrics.start();
+		if(!discardProbabilitiesWorkedOut){
+			Type handType = getHandType();
+			for(int i = 0; i < CARDS_PER_HAND; i++){
+				discardProbabilities[i] = calculateDiscardProbability(i, handType);
+			}
+			discardProbabilitiesWorkedOut = true;
+		}
+		PokerMetrics.DISCARD_PROBABILITY.stop(startTime);
+		return discardProbabilities[cardPosition];
+	}
+	
+	private int calculateDiscardProbability(int cardPosition, Type handType){
+		int discardProbability = DISCARD;
 		
 		if(handType == Type.HighHand || handType == Type.OnePair){
 			// if we have a highhand or single pair, then we call a method to check for a busted flush or broken straight,
@@ -507,16 +371,16 @@ public class HandOfCards {
 			discardProbability = discardHighHandOrOnePair(cardPosition, handType);
 		}else if(handType == Type.TwoPair){
 			// if we have a two pair, we check if the odd card is the cardPosition
-			ArrayList<Integer> indexes = getIndexesOfSingleCards();
-			if(indexes.contains(cardPosition)){
+			int indexes = getIndexesOfSingleCards();
+			if((indexes & (1 << cardPosition)) != 0){
 				return DISCARD;
 			}else{
 				return KEEP;
 			}
 		}else if(handType == Type.ThreeOfAKind){
 			// If we have 3 of a kind, we check if one of the two odd cards are in cardPosition
-			ArrayList<Integer> indexes = getIndexesOfSingleCards();
-			if(indexes.contains(cardPosition)){
+			int indexes = getIndexesOfSingleCards();
+			if((indexes & (1 << cardPosition)) != 0){
 				return DISCARD;
 			}else{
 				return KEEP;
@@ -554,9 +418,9 @@ public class HandOfCards {
 			
 		}else if(handType == Type.OnePair){
 			// if we have one pair, we discard any the 3 odd cards if they are in cardPosition
-			ArrayList<Integer> indexes = getIndexesOfSingleCards();
+			int indexes = getIndexesOfSingleCards();
 			
-			if(indexes.contains(cardPosition)){
+			if((indexes & (1 << cardPosition)) != 0){
 				return DISCARD;
 			}else{
 				return KEEP;
@@ -587,15 +451,16 @@ public class HandOfCards {
 	}
 	
 	
-	// returns a list of indexes of cards which only occurance once in the hand
-	private ArrayList<Integer> getIndexesOfSingleCards(){
-		ArrayList<Integer> indexes = new ArrayList<Integer>();
+	// returns the indexes of cards which only occurance once in the hand, as a bit mask
+	// where bit i is set if the card at index i is the only one of its type
+	private int getIndexesOfSingleCards(){
+		int indexes = 0;
 		
 		for (int i = 0; i < TYPES_OF_CARD; i++) {
 			if(gameValuesInHandCountArray[i] == 1){
 				int gameValue = i + 2;
 				int index = getIndexOfCardInHand(gameValue);
-				indexes.add(index);
+				indexes |= 1 << index;
 			}
 		}
 		return indexes;
@@ -613,40 +478,19 @@ public class HandOfCards {
 		
 		
 		int bustedIndex = FALSE;
-		int majoritySuitIndex = FALSE;
-		boolean bustedFlush = false;
 		
-		// tracks the number of each suit in hand, layout: [H, D, S, C]
-		int[] suitsInHand = {0,0,0,0};
-
-		// loops through the hand and stores the number of each suit
-		for(int i = 0; i < CARDS_PER_HAND; i++){
-			PlayingCard card = cards[i];
-			
-			// getEnumSuit.ordinal() returns an int between 0 and 3, representing the suits in order:  [H, D, S, C]
-			int suitIndex = card.getEnumSuit().ordinal();
-			// increments that suit
-			suitsInHand[suitIndex] += 1; 
-			
-			// if we have 4 of one suit, then we have a busted flush (this method is only called on hands which are not a flush)
-			// we then store an example index of the majority suit
-			if(suitsInHand[suitIndex] == 4){
-				bustedFlush = true;
-				majoritySuitIndex = i;
-				break;
-			}
-		}
-		
-		
-		if(bustedFlush){
-			
-			// loops through hand checking for a card which is not majority suit, stores its index
-			PlayingCard.Suit majoritySuit = cards[majoritySuitIndex].getEnumSuit();
-			for(int i = 0; i < CARDS_PER_HAND; i++){
-				PlayingCard.Suit candidateSuit = cards[i].getEnumSuit();
-				if(candidateSuit != majoritySuit){
-					bustedIndex = i;
+		// if we have 4 of one suit, then we have a busted flush (this method is only called on hands which are not a flush)
+		// the suit counts are kept up to date as cards come and go, so we can check them straight away
+		for(int suitIndex = 0; suitIndex < SUITS; suitIndex++){
+			if(suitsInHandCountArray[suitIndex] == CARDS_PER_HAND - 1){
+				
+				// loops through hand checking for the card which is not the majority suit, stores its index
+				for(int i = 0; i < CARDS_PER_HAND; i++){
+					if(PlayingCard.getSuitIndex(cards[i].getId()) != suitIndex){
+						bustedIndex = i;
+					}
 				}
+				break;
 			}
 		}
 		indexOfFlushBuster = bustedIndex;
@@ -775,7 +619,7 @@ public class HandOfCards {
 	
 	// if there is an ace in the hand, then it is at highest position
 	public boolean hasAce(){
-		return cards[HIGH_CARD_INDEX].getType() == "A"; 
+		return cards[HIGH_CARD_INDEX].getGameValue() == ACE; 
 	}
 	
 	public static void main(String[] args) {	
@@ -791,6 +635,7 @@ public class HandOfCards {
 		HandOfCards handOfCards;
 		int iterations = 1000;
 		for(int i = 0; i < iterations; i++){
+			deck.reset();
 			deck.shuffle();
 			handOfCards = new HandOfCards(deck);
 			
@@ -945,6 +790,7 @@ public class HandOfCards {
 
 		// deals 10000 hands and checks for type of hand
 		for(int i = 0; i < iterations && count < 10; i++){
+			deck.reset();
 			deck.shuffle();
 			HandOfCards handOfCards = new HandOfCards(deck);
 			
@@ -1033,11 +879,4 @@ public class HandOfCards {
 		return typeOfHandFlag;
 	}
 
-	public void receiveCard(PlayingCard card) {
-		for (int i = 0; i < cards.length; i++) {
-			if(cards[i] == null){
-				cards[i] = card;
-			}
-		}
-	}		
 }
@@ -0,0 +1,492 @@
+package poker;
+
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+// A no limit Texas Hold'em table, which deals the cards, posts the blinds, runs the betting on each street,
+// checks every action is allowed and settles the main pot and side pots at the end of the hand.
+//
+// All the state of the table is kept in primitive arrays and bit masks (bit p for the player in seat p) which are
+// reset in place by startHand(), so playing hands doesn't allocate anything and a single thread can play hundreds
+// of thousands of hands a second. A table isn't thread safe, each thread should have its own tables.
+//
+// A hand goes: startHand(), then while !isHandOver() the player in getSeatToAct() does one of fold(), check(),
+// call() or raiseTo(amount), then the stacks have been updated with getWinnings(). An action which isn't allowed
+// throws an IllegalStateException (or IllegalArgumentException for a raise of the wrong size) and changes nothing.
+public class HoldemTable {
+
+	public static int MAX_PLAYERS = 10;
+	public static int BOARD_CARDS = 5;
+
+	// streets, in the order they are played
+	public static int PREFLOP = 0;
+	public static int FLOP = 1;
+	public static int TURN = 2;
+	public static int RIVER = 3;
+	public static int HAND_OVER = 4;
+
+	public static int NO_SEAT = -1;
+
+	private static String[] STREET_NAMES = {"preflop", "flop", "turn", "river", "hand over"};
+
+	private int players;
+	private long smallBlind;
+	private long bigBlind;
+	private DeckOfCards deck = new DeckOfCards();
+	private ShowdownResolver resolver;
+
+	private long[] stacks;          // chips each player has left in front of them
+	private long[] streetBets;      // chips put in on this street
+	private long[] contributions;   // chips put in over the whole hand
+	private long[] winnings;        // chips won at the end of the last hand
+	private int[] holeCards;        // player p has holeCards[p * 2] and holeCards[p * 2 + 1]
+	private int[] board = new int[BOARD_CARDS];
+	private int boardCards;
+
+	private long inHand;                // dealt in and not folded
+	private long allIn;                 // in the hand with no chips left
+	private long needsToAct;            // still to act before the betting on this street is over
+	private long actedSinceFullRaise;   // can't raise again unless someone makes a full raise
+
+	private int button = NO_SEAT;
+	private int street = HAND_OVER;
+	private int seatToAct = NO_SEAT;
+	private long currentBet;   // the most anyone has put in on this street
+	private long minRaise;     // size of the last full raise, the least the next raise can add
+
+	public HoldemTable(int players, long smallBlind, long bigBlind, long startingStack){
+		if(players < 2 || players > MAX_PLAYERS){
+			throw new IllegalArgumentException("Can play 2 to " + MAX_PLAYERS + " players, not " + players);
+		}
+		if(smallBlind < 0 || bigBlind <= 0 || smallBlind > bigBlind){
+			throw new IllegalArgumentException("Blinds of " + smallBlind + "/" + bigBlind + " aren't allowed");
+		}
+		this.players = players;
+		this.smallBlind = smallBlind;
+		this.bigBlind = bigBlind;
+		this.resolver = new ShowdownResolver(players);
+		stacks = new long[players];
+		streetBets = new long[players];
+		contributions = new long[players];
+		winnings = new long[players];
+		holeCards = new int[players * EquityCalculator.HOLE_CARDS];
+		for (int seat = 0; seat < players; seat++) {
+			stacks[seat] = startingStack;
+		}
+	}
+
+	// moves the button on to the next player with chips, shuffles, deals and posts the blinds. Players with no
+	// chips sit the hand out
+	public void startHand(RandomGenerator random){
+		if(street != HAND_OVER){
+			throw new IllegalStateException("The last hand isn't over yet");
+		}
+		long seated = 0;
+		for (int seat = 0; seat < players; seat++) {
+			if(stacks[seat] > 0){
+				seated |= 1L << seat;
+			}
+			streetBets[seat] = 0;
+			contributions[seat] = 0;
+			winnings[seat] = 0;
+		}
+		if(Long.bitCount(seated) < 2){
+			throw new IllegalStateException("Need at least 2 players with chips to start a hand");
+		}
+		inHand = seated;
+		allIn = 0;
+		actedSinceFullRaise = 0;
+		boardCards = 0;
+		button = nextSeat(button == NO_SEAT ? players - 1 : button, seated);
+
+		deck.reset();
+		deck.shuffle(random);
+		for (long mask = seated; mask != 0; mask &= mask - 1) {
+			int seat = Long.numberOfTrailingZeros(mask);
+			deck.dealNextIds(EquityCalculator.HOLE_CARDS, holeCards, seat * EquityCalculator.HOLE_CARDS);
+		}
+
+		// heads up the button posts the small blind and acts first before the flop
+		int smallBlindSeat = Long.bitCount(seated) == 2 ? button : nextSeat(button, seated);
+		int bigBlindSeat = nextSeat(smallBlindSeat, seated);
+		street = PREFLOP;
+		putIn(smallBlindSeat, Math.min(smallBlind, stacks[smallBlindSeat]));
+		putIn(bigBlindSeat, Math.min(bigBlind, stacks[bigBlindSeat]));
+		currentBet = bigBlind;
+		minRaise = bigBlind;
+
+		// the big blind gets to act even if everyone calls, but if only one player has chips left they just
+		// need to call anything more than they've already put in
+		needsToAct = inHand & ~allIn;
+		if(Long.bitCount(needsToAct) < 2){
+			needsToAct = 0;
+			for (long mask = inHand & ~allIn; mask != 0; mask &= mask - 1) {
+				int seat = Long.numberOfTrailingZeros(mask);
+				if(streetBets[seat] < currentBet){
+					needsToAct |= 1L << seat;
+				}
+			}
+		}
+		if(needsToAct == 0){
+			nextStreet();
+		}else{
+			seatToAct = nextSeat(bigBlindSeat, needsToAct);
+		}
+	}
+
+	//**************************************************************************************************
+	// Actions *****************************************************************************************
+	//**************************************************************************************************
+
+	public void fold(){
+		int seat = checkTurn();
+		inHand &= ~(1L << seat);
+		needsToAct &= ~(1L << seat);
+		advance(seat);
+	}
+
+	public void check(){
+		int seat = checkTurn();
+		if(streetBets[seat] < currentBet){
+			throw new IllegalStateException("Can't check with " + getCallAmount() + " to call");
+		}
+		acted(seat);
+		advance(seat);
+	}
+
+	// calls the current bet, or puts in the rest of the player's chips if they have less than that
+	public void call(){
+		int seat = checkTurn();
+		long amount = getCallAmount();
+		if(amount == 0){
+			throw new IllegalStateException("Nothing to call, check instead");
+		}
+		putIn(seat, amount);
+		acted(seat);
+		advance(seat);
+	}
+
+	// bets or raises so the player has put in amount on this street altogether, which is between getMinRaiseTo()
+	// and getMaxRaiseTo(). A player can go all in for less than a full raise, but then the players who have
+	// already acted can only call or fold
+	public void raiseTo(long amount){
+		int seat = checkTurn();
+		if(!canRaise()){
+			throw new IllegalStateException("Seat " + seat + " can't raise");
+		}
+		long maxRaiseTo = getMaxRaiseTo();
+		if(amount > maxRaiseTo || (amount < getMinRaiseTo() && amount != maxRaiseTo)){
+			throw new IllegalArgumentException("Can raise to between " + getMinRaiseTo() + " and " + maxRaiseTo + ", not " + amount);
+		}
+		long raise = amount - currentBet;
+		putIn(seat, amount - streetBets[seat]);
+		if(raise >= minRaise){
+			minRaise = raise;
+			actedSinceFullRaise = 0;
+		}
+		currentBet = amount;
+		actedSinceFullRaise |= 1L << seat;
+		// everyone else has to act again
+		needsToAct = inHand & ~allIn & ~(1L << seat);
+		advance(seat);
+	}
+
+	public boolean canCheck(){
+		return seatToAct != NO_SEAT && streetBets[seatToAct] >= currentBet;
+	}
+
+	// a player can raise if they have chips left after calling, someone else could still call, and they
+	// haven't acted since the last full raise
+	public boolean canRaise(){
+		if(seatToAct == NO_SEAT){
+			return false;
+		}
+		long seatMask = 1L << seatToAct;
+		return stacks[seatToAct] > getCallAmount() && (actedSinceFullRaise & seatMask) == 0 && (inHand & ~allIn & ~seatMask) != 0;
+	}
+
+	public long getCallAmount(){
+		return seatToAct == NO_SEAT ? 0 : Math.min(currentBet - streetBets[seatToAct], stacks[seatToAct]);
+	}
+
+	public long getMinRaiseTo(){
+		return Math.min(currentBet + minRaise, getMaxRaiseTo());
+	}
+
+	public long getMaxRaiseTo(){
+		return seatToAct == NO_SEAT ? 0 : streetBets[seatToAct] + stacks[seatToAct];
+	}
+
+	private int checkTurn(){
+		if(seatToAct == NO_SEAT){
+			throw new IllegalStateException("Nobody can act, the hand is over or hasn't started");
+		}
+		return seatToAct;
+	}
+
+	private void putIn(int seat, long amount){
+		stacks[seat] -= amount;
+		streetBets[seat] += amount;
+		contributions[seat] += amount;
+		if(stacks[seat] == 0){
+			allIn |= 1L << seat;
+		}
+	}
+
+	private void acted(int seat){
+		needsToAct &= ~(1L << seat);
+		actedSinceFullRaise |= 1L << seat;
+	}
+
+	// moves on to the next player, street or the end of the hand after the player in seat has acted
+	private void advance(int seat){
+		if(Long.bitCount(inHand) == 1){
+			settle();
+		}else if(needsToAct != 0){
+			seatToAct = nextSeat(seat, needsToAct);
+		}else{
+			nextStreet();
+		}
+	}
+
+	// deals the next street, and carries on to the showdown if fewer than 2 players have chips left to bet with
+	private void nextStreet(){
+		while(true){
+			if(street == RIVER){
+				settle();
+				return;
+			}
+			street++;
+			int cardsToDeal = street == FLOP ? 3 : 1;
+			deck.dealNextIds(cardsToDeal, board, boardCards);
+			boardCards += cardsToDeal;
+
+			for (int seat = 0; seat < players; seat++) {
+				streetBets[seat] = 0;
+			}
+			currentBet = 0;
+			minRaise = bigBlind;
+			actedSinceFullRaise = 0;
+			long canAct = inHand & ~allIn;
+			if(Long.bitCount(canAct) >= 2){
+				needsToAct = canAct;
+				seatToAct = nextSeat(button, needsToAct);
+				return;
+			}
+		}
+	}
+
+	// gives the pot to the last player left, or shares it out at the showdown, and adds the winnings to the stacks
+	private void settle(){
+		street = HAND_OVER;
+		seatToAct = NO_SEAT;
+		needsToAct = 0;
+		if(Long.bitCount(inHand) == 1){
+			long pot = getPot();
+			winnings[Long.numberOfTrailingZeros(inHand)] = pot;
+		}else{
+			resolver.resolve(holeCards, board, players, inHand);
+			resolver.distributePots(contributions, winnings);
+		}
+		for (int seat = 0; seat < players; seat++) {
+			stacks[seat] += winnings[seat];
+		}
+	}
+
+	// the first seat after seat, going round the table, with its bit set in mask
+	private int nextSeat(int seat, long mask){
+		for (int i = 1; i <= players; i++) {
+			int next = (seat + i) % players;
+			if((mask & (1L << next)) != 0){
+				return next;
+			}
+		}
+		return NO_SEAT;
+	}
+
+	//**************************************************************************************************
+	// State *******************************************************************************************
+	//**************************************************************************************************
+
+	public int getNumberOfPlayers(){
+		return players;
+	}
+
+	public int getStreet(){
+		return street;
+	}
+
+	public boolean isHandOver(){
+		return street == HAND_OVER;
+	}
+
+	// NO_SEAT when the hand is over
+	public int getSeatToAct(){
+		return seatToAct;
+	}
+
+	public int getButton(){
+		return button;
+	}
+
+	public long getStack(int seat){
+		return stacks[seat];
+	}
+
+	// sets a player's chips between hands, e.g. to top them back up, 0 sits them out
+	public void setStack(int seat, long chips){
+		if(street != HAND_OVER){
+			throw new IllegalStateException("Can't change stacks during a hand");
+		}
+		if(chips < 0){
+			throw new IllegalArgumentException("Can't have " + chips + " chips");
+		}
+		stacks[seat] = chips;
+	}
+
+	public long getStreetBet(int seat){
+		return streetBets[seat];
+	}
+
+	public long getContribution(int seat){
+		return contributions[seat];
+	}
+
+	public long getCurrentBet(){
+		return currentBet;
+	}
+
+	// every chip put in this hand, including the bets on this street
+	public long getPot(){
+		long pot = 0;
+		for (int seat = 0; seat < players; seat++) {
+			pot += contributions[seat];
+		}
+		return pot;
+	}
+
+	// chips won by the player in the last hand which finished, including any of their own bet which nobody called
+	public long getWinnings(int seat){
+		return winnings[seat];
+	}
+
+	public boolean isInHand(int seat){
+		return (inHand & (1L << seat)) != 0;
+	}
+
+	public boolean isAllIn(int seat){
+		return (allIn & (1L << seat)) != 0;
+	}
+
+	public long getPlayersInHand(){
+		return inHand;
+	}
+
+	public int getHoleCard(int seat, int i){
+		return holeCards[seat * EquityCalculator.HOLE_CARDS + i];
+	}
+
+	public int getNumberOfBoardCards(){
+		return boardCards;
+	}
+
+	public int getBoardCard(int i){
+		return board[i];
+	}
+
+	public String toString(){
+		StringBuilder builder = new StringBuilder();
+		builder.append(STREET_NAMES[street]).append(", pot ").append(getPot()).append(", board");
+		for (int i = 0; i < boardCards; i++) {
+			builder.append(" ").append(PlayingCard.getCard(board[i]));
+		}
+		for (int seat = 0; seat < players; seat++) {
+			builder.append(String.format("%n%s seat %d: %s %s, stack %d, bet %d, put in %d%s%s", seat == seatToAct ? ">" : " ", seat,
+					PlayingCard.getCard(getHoleCard(seat, 0)), PlayingCard.getCard(getHoleCard(seat, 1)), stacks[seat], streetBets[seat], contributions[seat],
+					isInHand(seat) ? "" : " (folded)", isAllIn(seat) ? " (all in)" : ""));
+			if(street == HAND_OVER && winnings[seat] > 0){
+				builder.append(", won ").append(winnings[seat]);
+			}
+		}
+		return builder.toString();
+	}
+
+	// a player who folds 1 in 10 times when facing a bet, raises 1 in 5 times, and otherwise checks or calls,
+	// raising the minimum most of the time and all in the rest
+	static void playRandomAction(HoldemTable table, RandomGenerator random){
+		int choice = random.nextInt(10);
+		if(choice == 0 && !table.canCheck()){
+			table.fold();
+		}else if(choice <= 2 && table.canRaise()){
+			table.raiseTo(random.nextInt(4) == 0 ? table.getMaxRaiseTo() : table.getMinRaiseTo());
+		}else if(table.canCheck()){
+			table.check();
+		}else{
+			table.call();
+		}
+	}
+
+	// plays hands of random actions on one thread, checking no chips go missing, then shows a hand with side pots
+	public static void main(String[] args) {
+		SplittableRandom random = new SplittableRandom(42);
+		HoldemTable table = new HoldemTable(6, 1, 2, 200);
+		long totalChips = 6 * 200;
+
+		for (int round = 0; round < 3; round++) {
+			long hands = 1_000_000;
+			long actions = 0;
+			long showdowns = 0;
+			long startTime = System.nanoTime();
+			for (long hand = 0; hand < hands; hand++) {
+				table.startHand(random);
+				while(!table.isHandOver()){
+					playRandomAction(table, random);
+					actions++;
+				}
+				if(Long.bitCount(table.getPlayersInHand()) > 1){
+					showdowns++;
+				}
+
+				long chips = 0;
+				for (int seat = 0; seat < 6; seat++) {
+					chips += table.getStack(seat);
+				}
+				if(chips != totalChips){
+					throw new IllegalStateException("Chips went missing: " + chips + " instead of " + totalChips + "\n" + table);
+				}
+				// tops everyone back up when a player goes bust, so the table keeps 6 players
+				for (int seat = 0; seat < 6; seat++) {
+					if(table.getStack(seat) == 0){
+						for (int other = 0; other < 6; other++) {
+							table.setStack(other, 200);
+						}
+						break;
+					}
+				}
+			}
+			long timeDifference = System.nanoTime() - startTime;
+			System.out.println(String.format("%d hands in %.2f s, %.0f hands/sec, %.1f actions per hand, %.3f went to showdown", hands,
+					timeDifference / 1e9, hands / (timeDifference / 1e9), (double) actions / hands, (double) showdowns / hands));
+		}
+
+		// three players all in for different amounts, dealt until the shortest stack wins, who can only win the
+		// main pot, the side pot going to the better of the other two. A new table each time keeps the button on
+		// seat 0, who acts first and goes all in for 500, so the 200 nobody can call goes back to seat 0
+		HoldemTable sidePots;
+		do {
+			sidePots = new HoldemTable(3, 5, 10, 0);
+			sidePots.setStack(0, 500);
+			sidePots.setStack(1, 100);
+			sidePots.setStack(2, 300);
+			sidePots.startHand(random);
+			while(!sidePots.isHandOver()){
+				if(sidePots.canRaise()){
+					sidePots.raiseTo(sidePots.getMaxRaiseTo());
+				}else{
+					sidePots.call();
+				}
+			}
+		} while(sidePots.getWinnings(1) == 0);
+		System.out.println(sidePots);
+	}
+}
@@ -0,0 +1,133 @@
+package poker;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock free histogram of how long an operation takes, in nanoseconds, which any number of threads can record to.
+//
+// Times are counted in buckets which are exact below 16 ns and above that split each power of 2 into 16 equal
+// sub buckets, the same idea as an HdrHistogram with one significant hex digit, so a percentile read from it is
+// within about 6% of the real time. The buckets are an AtomicLongArray, and the count, total and maximum are kept
+// in striped LongAdders and a LongAccumulator, so recording is a few uncontended atomic adds.
+public class LatencyHistogram implements LatencyHistogramMBean {
+
+	private static int SUB_BUCKET_BITS = 4;
+	private static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private String name;
+	private AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private LongAdder count = new LongAdder();
+	private LongAdder totalNanos = new LongAdder();
+	private LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+	public LatencyHistogram(String name){
+		this.name = name;
+	}
+
+	public String getName(){
+		return name;
+	}
+
+	public void record(long nanos){
+		if(nanos < 0){
+			nanos = 0;
+		}
+		buckets.incrementAndGet(getBucket(nanos));
+		count.increment();
+		totalNanos.add(nanos);
+		maxNanos.accumulate(nanos);
+	}
+
+	// records the time since a start time from PokerMetrics.start(), which is 0 if metrics were disabled
+	public void stop(long startTime){
+		if(startTime != 0){
+			record(System.nanoTime() - startTime);
+		}
+	}
+
+	// bucket for a time, times below 16 have a bucket each, above that the bucket is worked out from the
+	// position of the highest bit and the 4 bits below it
+	static int getBucket(long nanos){
+		if(nanos < SUB_BUCKETS){
+			return (int) nanos;
+		}
+		int magnitude = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+		int subBucket = (int) (nanos >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	// the highest time which falls in the bucket
+	static long getBucketTop(int bucket){
+		if(bucket < SUB_BUCKETS){
+			return bucket;
+		}
+		int magnitude = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long subBucket = bucket % SUB_BUCKETS;
+		long bottom = (1L << magnitude) | (subBucket << (magnitude - SUB_BUCKET_BITS));
+		return bottom + (1L << (magnitude - SUB_BUCKET_BITS)) - 1;
+	}
+
+	public long getCount(){
+		return count.sum();
+	}
+
+	public double getMeanNanos(){
+		long count = getCount();
+		return count == 0 ? 0 : (double) totalNanos.sum() / count;
+	}
+
+	public long getMaxNanos(){
+		return maxNanos.get();
+	}
+
+	// the time which this fraction of the recorded times are at or below, e.g. 0.99 for the 99th percentile,
+	// read while other threads are recording it is only as exact as the counts at that moment
+	public long getPercentileNanos(double fraction){
+		long total = 0;
+		long[] counts = new long[BUCKETS];
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			counts[bucket] = buckets.get(bucket);
+			total += counts[bucket];
+		}
+		if(total == 0){
+			return 0;
+		}
+		long target = (long) Math.ceil(fraction * total);
+		long seen = 0;
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			seen += counts[bucket];
+			if(seen >= target && counts[bucket] > 0){
+				return Math.min(getBucketTop(bucket), getMaxNanos());
+			}
+		}
+		return getMaxNanos();
+	}
+
+	public long getMedianNanos(){
+		return getPercentileNanos(0.5);
+	}
+
+	public long get99thPercentileNanos(){
+		return getPercentileNanos(0.99);
+	}
+
+	public long get999thPercentileNanos(){
+		return getPercentileNanos(0.999);
+	}
+
+	public void reset(){
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			buckets.set(bucket, 0);
+		}
+		count.reset();
+		totalNanos.reset();
+		maxNanos.reset();
+	}
+
+	public String toString(){
+		return String.format("%-20s %10d calls, mean %8.1f ns, median %6d ns, 99%% %7d ns, 99.9%% %8d ns, max %9d ns", name, getCount(),
+				getMeanNanos(), getMedianNanos(), get99thPercentileNanos(), get999thPercentileNanos(), getMaxNanos());
+	}
+}
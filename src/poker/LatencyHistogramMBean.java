@@ -0,0 +1,19 @@
+package poker;
+
+// what a LatencyHistogram shows over JMX, one MBean for each operation timed by PokerMetrics
+public interface LatencyHistogramMBean {
+
+	public long getCount();
+
+	public double getMeanNanos();
+
+	public long getMedianNanos();
+
+	public long get99thPercentileNanos();
+
+	public long get999thPercentileNanos();
+
+	public long getMaxNanos();
+
+	public void reset();
+}
@@ -6,6 +6,7 @@ public class PlayingCard {
 	private char suit;
 	private int faceValue;
 	private int gameValue;
+	private int id;
 	
 	public static final char HEARTS = 'H';
 	public static final char DIAMONDS = 'D';
@@ -16,6 +17,28 @@ public class PlayingCard {
 	
 	private Suit enumSuit;
 	
+	// Each card also has a primitive id from 0-51, rank index * 4 + suit index, where the rank index goes
+	// from 0 for a 2 up to 12 for an Ace and the suit index is the ordinal of its Suit. The rank and suit
+	// can be read straight from the bits of the id, i.e. id >>> 2 and id & 3
+	public static final int NUMBER_OF_CARDS = 52;
+	public static final int NO_CARD = -1;
+	private static final int SUIT_BITS = 2;
+	private static final int SUIT_MASK = 3;
+	
+	private static final String[] TYPES = {"2", "3", "4", "5", "6", "7", "8", "9", "10", "J", "Q", "K", "A"};  // by rank index
+	private static final char[] SUITS = {HEARTS, DIAMONDS, SPADES, CLUBS};  // by suit index, same order as Suit
+	
+	// one shared instance of each card, indexed by id, so the 52 cards are only ever created once
+	private static final PlayingCard[] CARDS = new PlayingCard[NUMBER_OF_CARDS];
+	
+	static {
+		for (int id = 0; id < NUMBER_OF_CARDS; id++) {
+			int gameValue = getRankIndex(id) + 2;
+			int faceValue = gameValue == 14 ? 1 : gameValue;  // Ace has a face value of 1
+			CARDS[id] = new PlayingCard(TYPES[getRankIndex(id)], SUITS[getSuitIndex(id)], faceValue, gameValue);
+		}
+	}
+	
 	public PlayingCard(String type, char suit, int faceValue, int gameValue) {
 		this.type = type;
 		this.suit = suit;
@@ -28,10 +51,51 @@ public class PlayingCard {
 			enumSuit = Suit.Spades;
 		}else if(suit == 'C'){
 			enumSuit = Suit.Clubs;
-		}		
+		}else{
+			throw new IllegalArgumentException("Not a suit: " + suit);
+		}
+		
+		// the id is worked out from the game value, so it has to be a real rank, 2 up to 14 for an Ace
+		if(gameValue < 2 || gameValue > TYPES.length + 1){
+			throw new IllegalArgumentException("Not a game value: " + gameValue);
+		}
 		
 		this.faceValue = faceValue;
 		this.gameValue = gameValue;
+		this.id = ((gameValue - 2) << SUIT_BITS) | enumSuit.ordinal();
+	}
+	
+	// returns the shared instance of the card with this id
+	public static PlayingCard getCard(int id){
+		return CARDS[id];
+	}
+	
+	// returns the shared instance of a card, e.g. getCard("A", 'H') for the Ace of hearts
+	public static PlayingCard getCard(String type, char suit){
+		for (int rankIndex = 0; rankIndex < TYPES.length; rankIndex++) {
+			if(TYPES[rankIndex].equals(type)){
+				for (int suitIndex = 0; suitIndex < SUITS.length; suitIndex++) {
+					if(SUITS[suitIndex] == suit){
+						return CARDS[getId(rankIndex, suitIndex)];
+					}
+				}
+			}
+		}
+		return null;
+	}
+	
+	public static int getId(int rankIndex, int suitIndex){
+		return (rankIndex << SUIT_BITS) | suitIndex;
+	}
+	
+	// rank index of a card id, 0 for a 2 up to 12 for an Ace
+	public static int getRankIndex(int id){
+		return id >>> SUIT_BITS;
+	}
+	
+	// suit index of a card id, the ordinal of its Suit
+	public static int getSuitIndex(int id){
+		return id & SUIT_MASK;
 	}
 	
 	public String toString(){
@@ -58,6 +122,10 @@ public class PlayingCard {
 		return gameValue;	
 	}
 	
+	public int getId(){
+		return id;
+	}
+	
 	public static void main(String[] args) {
 		PlayingCard card = new PlayingCard("A", 'H', 1, 14);
 		
@@ -65,19 +133,14 @@ public class PlayingCard {
 		
 		System.out.println("Card: " + card.toString());
 		
-		char[] suits = {PlayingCard.HEARTS, PlayingCard.DIAMONDS, PlayingCard.SPADES, PlayingCard.CLUBS};
-		String[] types = {"A","2","3","4","5","6","7","8","9","10","J","Q","K"};
-		
-		int counter = 0;
-		for(int i = 0; i < suits.length; i++){
-			for(int j = 0; j < types.length; j++){
-				int gameValue = types[j] == "A" ? 14 : j + 1;
-				deck[counter++] = new PlayingCard(types[j], suits[i], j + 1, gameValue);
-			}
+		for(int id = 0; id < deck.length; id++){
+			deck[id] = PlayingCard.getCard(id);
 		}
 		
+		// checks that each card converts back to the same id and shared instance
 		for(int i = 0; i < deck.length; i++){
-			System.out.println(deck[i].toString());
+			PlayingCard sameCard = PlayingCard.getCard(deck[i].getType(), deck[i].getSuit());
+			System.out.println(deck[i].toString() + " " + deck[i].getId() + " " + (sameCard == deck[i]));
 		}
 	}
 	
@@ -0,0 +1,130 @@
+package poker;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.StackTrace;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+// JDK Flight Recorder events for shuffling, dealing, evaluating hands and deciding discards, so a recording can show
+// which hands and decisions the slow ones were, next to the GC pauses and safepoints JFR records anyway.
+//
+// The events are off even while a recording is running, and are switched on by name, e.g.
+// recording.enable("poker.Evaluate") or "poker.Evaluate#enabled=true" in a .jfc settings file. The timed methods
+// create an event, begin() it, and only fill in the fields and commit() when shouldCommit() says it's wanted. While an
+// event type is off, or no recording is running, the JIT removes the event object and the calls are close to free.
+// Stack traces are off as well, since they cost far more than the methods being timed.
+public class PokerEvents {
+
+	private PokerEvents(){
+	}
+
+	@Name("poker.Shuffle")
+	@Label("Shuffle")
+	@Category("Poker")
+	@Description("Shuffling a deck of cards")
+	@Enabled(false)
+	@StackTrace(false)
+	public static class ShuffleEvent extends Event {
+		@Label("Cards")
+		int cards;
+	}
+
+	@Name("poker.Deal")
+	@Label("Deal")
+	@Category("Poker")
+	@Description("Claiming cards from a deck, including any retries when another thread deals at the same time")
+	@Enabled(false)
+	@StackTrace(false)
+	public static class DealEvent extends Event {
+		@Label("Cards Dealt")
+		int cardsDealt;
+
+		@Label("Cards Left")
+		int cardsLeft;
+	}
+
+	@Name("poker.Evaluate")
+	@Label("Evaluate Hand")
+	@Category("Poker")
+	@Description("Working out the game value and type of a five card hand")
+	@Enabled(false)
+	@StackTrace(false)
+	public static class EvaluateEvent extends Event {
+		@Label("Hand Type")
+		String handType;
+
+		@Label("Game Value")
+		int gameValue;
+	}
+
+	@Name("poker.Discard")
+	@Label("Discard")
+	@Category("Poker")
+	@Description("A player deciding which cards to discard and drawing their replacements")
+	@Enabled(false)
+	@StackTrace(false)
+	public static class DiscardEvent extends Event {
+		@Label("Hand Type Before")
+		String handTypeBefore;
+
+		@Label("Hand Type After")
+		String handTypeAfter;
+
+		@Label("Cards Discarded")
+		int cardsDiscarded;
+
+		@Label("Discard Mask")
+		@Description("Bit i is set if the card at index i was discarded")
+		int discardMask;
+	}
+
+	// plays some hands while recording the discard and evaluate events to a file, then reads it back and prints
+	// the slowest discard decision for each type of hand
+	public static void main(String[] args) throws IOException {
+		Path file = Files.createTempFile("poker", ".jfr");
+		SelfPlaySimulator simulator = new SelfPlaySimulator();
+		try (Recording recording = new Recording()) {
+			recording.enable(DiscardEvent.class);
+			recording.enable(EvaluateEvent.class);
+			recording.start();
+			System.out.println(simulator.run(10, 1000, 42, SelfPlaySimulator.Mode.FORK_JOIN).toString().split(System.lineSeparator())[0]);
+			recording.stop();
+			recording.dump(file);
+		}
+
+		int discards = 0;
+		int evaluations = 0;
+		Map<String, RecordedEvent> slowest = new TreeMap<String, RecordedEvent>();
+		for (RecordedEvent event: RecordingFile.readAllEvents(file)) {
+			String name = event.getEventType().getName();
+			if(name.equals("poker.Evaluate")){
+				evaluations++;
+			}else if(name.equals("poker.Discard")){
+				discards++;
+				RecordedEvent current = slowest.get(event.getString("handTypeBefore"));
+				if(current == null || event.getDuration().compareTo(current.getDuration()) > 0){
+					slowest.put(event.getString("handTypeBefore"), event);
+				}
+			}
+		}
+		Files.delete(file);
+
+		System.out.println(discards + " discard events, " + evaluations + " evaluate events");
+		for (RecordedEvent event: slowest.values()) {
+			System.out.println(String.format("slowest discard from %-14s %7d ns, %d cards discarded, ended with %s", event.getString("handTypeBefore"),
+					event.getDuration().toNanos(), event.getInt("cardsDiscarded"), event.getString("handTypeAfter")));
+		}
+	}
+}
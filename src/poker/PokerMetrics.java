@@ -0,0 +1,101 @@
+package poker;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.Attribute;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Times the hot paths of the bot (shuffling, dealing, evaluating hands and deciding discards) in LatencyHistograms,
+// which can be watched over JMX (e.g. with jconsole) once register() has been called, under "poker:type=Latency".
+//
+// Metrics are off unless the JVM is started with -Dpoker.metrics=true, or they are switched on through the
+// "poker:type=Metrics" MBean. Each timed method asks start() for a start time, which is a single read of a
+// volatile flag while metrics are off, and passes it to the histogram's stop(), which does nothing with a 0.
+public class PokerMetrics implements PokerMetricsMBean {
+
+	public static final LatencyHistogram SHUFFLE = new LatencyHistogram("shuffle");
+	public static final LatencyHistogram DEAL = new LatencyHistogram("deal");
+	public static final LatencyHistogram EVALUATE = new LatencyHistogram("evaluate");
+	public static final LatencyHistogram DISCARD_PROBABILITY = new LatencyHistogram("discardProbability");
+	public static final LatencyHistogram DISCARD = new LatencyHistogram("discard");
+
+	private static final LatencyHistogram[] HISTOGRAMS = {SHUFFLE, DEAL, EVALUATE, DISCARD_PROBABILITY, DISCARD};
+
+	private static volatile boolean enabled = Boolean.getBoolean("poker.metrics");
+	private static boolean registered;
+
+	private PokerMetrics(){
+	}
+
+	// the time now if metrics are on, otherwise 0
+	public static long start(){
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	public static boolean isMetricsEnabled(){
+		return enabled;
+	}
+
+	public static void setMetricsEnabled(boolean enabled){
+		PokerMetrics.enabled = enabled;
+	}
+
+	public static LatencyHistogram[] getHistograms(){
+		return HISTOGRAMS.clone();
+	}
+
+	// registers the MBeans with the platform MBean server, doing nothing if they already are
+	public static synchronized void register(){
+		if(registered){
+			return;
+		}
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			server.registerMBean(new PokerMetrics(), new ObjectName("poker:type=Metrics"));
+			for (LatencyHistogram histogram: HISTOGRAMS) {
+				server.registerMBean(histogram, new ObjectName("poker:type=Latency,name=" + histogram.getName()));
+			}
+		} catch (JMException e) {
+			throw new IllegalStateException("Couldn't register the poker metrics", e);
+		}
+		registered = true;
+	}
+
+	// the MBean's Enabled attribute is the same switch as isMetricsEnabled() and setMetricsEnabled()
+	public boolean isEnabled(){
+		return isMetricsEnabled();
+	}
+
+	public void setEnabled(boolean enabled){
+		setMetricsEnabled(enabled);
+	}
+
+	public void reset(){
+		for (LatencyHistogram histogram: HISTOGRAMS) {
+			histogram.reset();
+		}
+	}
+
+	// plays some hands with metrics on and prints the histograms, then reads them back through JMX
+	public static void main(String[] args) throws JMException {
+		register();
+		setMetricsEnabled(true);
+
+		SelfPlaySimulator simulator = new SelfPlaySimulator();
+		System.out.println(simulator.run(100, 1000, 42, SelfPlaySimulator.Mode.FORK_JOIN).toString().split(System.lineSeparator())[0]);
+		for (LatencyHistogram histogram: HISTOGRAMS) {
+			System.out.println(histogram);
+		}
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName discard = new ObjectName("poker:type=Latency,name=discard");
+		System.out.println("over JMX: discard count " + server.getAttribute(discard, "Count") + ", 99th percentile "
+				+ server.getAttribute(discard, "99thPercentileNanos") + " ns");
+
+		// and with metrics off, the simulator runs without timing anything
+		server.setAttribute(new ObjectName("poker:type=Metrics"), new Attribute("Enabled", false));
+		System.out.println("metrics off: " + simulator.run(100, 1000, 42, SelfPlaySimulator.Mode.FORK_JOIN).toString().split(System.lineSeparator())[0]);
+	}
+}
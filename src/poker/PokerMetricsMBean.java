@@ -0,0 +1,12 @@
+package poker;
+
+// switches PokerMetrics on and off over JMX
+public interface PokerMetricsMBean {
+
+	public boolean isEnabled();
+
+	public void setEnabled(boolean enabled);
+
+	// clears every histogram
+	public void reset();
+}
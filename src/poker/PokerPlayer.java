@@ -1,8 +1,7 @@
 package poker;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 public class PokerPlayer {
 
@@ -13,6 +12,13 @@ public class PokerPlayer {
 	private DeckOfCards deckOfCards;
 	private HandOfCards handOfCards;
 	
+	// when set, discards are chosen by expected strength after the draw instead of the discard probabilities
+	private DrawEvaluator drawEvaluator;
+	
+	// when set, discards are chosen by sampling for up to timeBudget nanoseconds, which comes before the draw evaluator
+	private AnytimeDecider anytimeDecider;
+	private long timeBudget;
+	
 	// constructor receives deck of cards and deals a hand for the player
 	public PokerPlayer(DeckOfCards deckOfCards){
 		this.deckOfCards = deckOfCards;
@@ -20,51 +26,136 @@ public class PokerPlayer {
 	}
 	
 	// this method chooses which cards to discard, returns these to the deck, and receives replacement cards for the hand
+	// prints the discarded cards, see discard(RandomGenerator) for the same without any printing
 	public int discard(){
+		return Integer.bitCount(discard(ThreadLocalRandom.current(), true));
+	}
+	
+	public HandOfCards getHandOfCards(){
+		return handOfCards;
+	}
+	
+	// makes the player pick the discard with the best expected strength after the draw, shared between players
+	// so each hand only needs working out once, null goes back to using the discard probabilities
+	public void setDrawEvaluator(DrawEvaluator drawEvaluator){
+		this.drawEvaluator = drawEvaluator;
+	}
+	
+	// makes the player sample the expected strength of each discard for timeBudget nanoseconds and pick the best,
+	// a null decider goes back to the draw evaluator or the discard probabilities
+	public void setAnytimeDecider(AnytimeDecider anytimeDecider, long timeBudget){
+		this.anytimeDecider = anytimeDecider;
+		this.timeBudget = timeBudget;
+	}
+	
+	// same as discard() but takes its random numbers from the caller and doesn't print anything, choosing by the
+	// discard probabilities nothing is allocated so it can be called millions of times without creating garbage,
+	// but a draw evaluator or anytime decider allocates its working arrays (and sampling tasks) on every call
+	public int discard(RandomGenerator random){
+		return Integer.bitCount(discard(random, false));
+	}
+	
+	// does the discard for both of the above, timed and recorded, and returns the bit mask of the cards discarded
+	// for callers which keep a record of them
+	int discard(RandomGenerator random, boolean printDiscards){
+		long startTime = PokerMetrics.start();
+		PokerEvents.DiscardEvent event = beginDiscardEvent();
+		int cardsToDiscard = chooseDiscards(random);
+		
+		if(printDiscards){
+			System.out.print("Dicarding cards: ");
+			for(int cardIndex = 0; cardIndex < HandOfCards.CARDS_PER_HAND; cardIndex++){
+				if((cardsToDiscard & (1 << cardIndex)) != 0){
+					System.out.print(handOfCards.getCard(cardIndex).toString() + " ");
+				}
+			}
+			System.out.println();
+		}
+		
+		int cardsDiscarded = replaceCards(cardsToDiscard);
+		PokerMetrics.DISCARD.stop(startTime);
+		commitDiscardEvent(event, cardsToDiscard, cardsDiscarded);
+		return cardsToDiscard;
+	}
+	
+	// the JFR event for a discard, the type of hand before the discard is only worked out when the event is
+	// being recorded, as the hand may not have been evaluated yet
+	private PokerEvents.DiscardEvent beginDiscardEvent(){
+		PokerEvents.DiscardEvent event = new PokerEvents.DiscardEvent();
+		if(event.isEnabled()){
+			event.handTypeBefore = handOfCards.getHandType().name();
+		}
+		event.begin();
+		return event;
+	}
+	
+	private void commitDiscardEvent(PokerEvents.DiscardEvent event, int cardsToDiscard, int cardsDiscarded){
+		if(event.shouldCommit()){
+			event.discardMask = cardsToDiscard;
+			event.cardsDiscarded = cardsDiscarded;
+			event.handTypeAfter = handOfCards.getHandType().name();
+			event.commit();
+		}
+	}
+	
+	// chooses which cards to discard without changing the hand, returns a bit mask where bit i is set
+	// if the card at index i should be discarded
+	public int chooseDiscards(RandomGenerator random){
+		if(anytimeDecider != null){
+			return anytimeDecider.decideWithin(handOfCards, MAX_CARDS_TO_DISCARD, timeBudget).getDiscardMask();
+		}
+		if(drawEvaluator != null){
+			return drawEvaluator.getBestDiscard(handOfCards, MAX_CARDS_TO_DISCARD);
+		}
 		
 		// keeps track of the indexes of the cards to discard
-		ArrayList<Integer> cardsToDiscardIndexArray = new ArrayList<Integer>();
+		int cardsToDiscard = 0;
+		int numberOfCardsToDiscard = 0;
 		
-		// keeps track of possible cards to discard
-		HashMap<Integer, Integer> possibleDiscards = new HashMap<Integer, Integer>();		
+		// keeps track of the indexes of possible cards to discard, their probabilities are asked for again 
+		// later, which is just a read as the hand keeps them once they are worked out
+		int possibleDiscards = 0;		
 		
 		// if the players hand has a discard probability of 100 (static variable DISCARD) for a card, then
 		// the hand should only return those cards with 100, and ignore any other card probabilities
 		// this is to allow the attempt to fill a broken straight etc
 		boolean noDefiniteCardsToDiscard = true; 
 
-		for(int index = 0; index < handOfCards.CARDS_PER_HAND; index++){
+		for(int index = 0; index < HandOfCards.CARDS_PER_HAND; index++){
 			
 			// gets discard probability
 			int discardProbability = handOfCards.getDiscardProbability(index);
 			
 			// if prob is 0 (static variable KEEP), continue as this is a card we want to keep no matter what
-			if(discardProbability == handOfCards.KEEP){
+			if(discardProbability == HandOfCards.KEEP){
 				continue;
 			// if prob is 100 (static variable DISCARD), then we discard, as this is a card which may be blocking a run or flush
-			}else if(discardProbability == handOfCards.DISCARD && cardsToDiscardIndexArray.size() < MAX_CARDS_TO_DISCARD){
-				cardsToDiscardIndexArray.add(index);
+			}else if(discardProbability == HandOfCards.DISCARD && numberOfCardsToDiscard < MAX_CARDS_TO_DISCARD){
+				cardsToDiscard |= 1 << index;
+				numberOfCardsToDiscard++;
 				noDefiniteCardsToDiscard = false; // we alway set flag to ignore all other non 100 probabilities
 			}else{
 				// any value in between 0 and 100 is stored for later evaluation
-				possibleDiscards.put(index, discardProbability);
+				possibleDiscards |= 1 << index;
 			}
 		}
 		
-		Random random = new Random();
-		
 		// if we haven't discarded max cards and we aren't trying to fill a special hand, then we check other cards for discarding
-		if(noDefiniteCardsToDiscard && cardsToDiscardIndexArray.size() < MAX_CARDS_TO_DISCARD){
+		if(noDefiniteCardsToDiscard && numberOfCardsToDiscard < MAX_CARDS_TO_DISCARD){
 			
-			// loop through cards with prob between 0 and 100
-			for(Integer index: possibleDiscards.keySet()){
+			// loop through cards with prob between 0 and 100, lowest index first
+			for(int index = 0; index < HandOfCards.CARDS_PER_HAND; index++){
+				if((possibleDiscards & (1 << index)) == 0){
+					continue;
+				}
+				
 				// used to multiply the prob. of dicarding the card, the less cards we have already discarded, the higher this value
 				// therefore if we have dicarded no cards so far, then the odds are very high that we discard at least one card
 				// multiplier decreases as the more cards are discarded
-				int probabilityMultiplier = MAX_CARDS_TO_DISCARD - cardsToDiscardIndexArray.size(); 
+				int probabilityMultiplier = MAX_CARDS_TO_DISCARD - numberOfCardsToDiscard; 
 				
 				// multiplies discard probability of the card by probability multiplier
-				int discardProbability = possibleDiscards.get(index) * probabilityMultiplier;
+				int discardProbability = handOfCards.getDiscardProbability(index) * probabilityMultiplier;
 				
 				
 				// gets a random value between 0 and 100
@@ -72,32 +163,36 @@ public class PokerPlayer {
 				
 				// discards card if our discard probability is less than the random threshold
 				if(discardProbability <= discardThreshold){
-					cardsToDiscardIndexArray.add(index);
+					cardsToDiscard |= 1 << index;
+					numberOfCardsToDiscard++;
 				}
 				
 				// breaks from loop if we have reach max cards to discard, otherwise checks the next possible card
-				if(cardsToDiscardIndexArray.size() == MAX_CARDS_TO_DISCARD){
+				if(numberOfCardsToDiscard == MAX_CARDS_TO_DISCARD){
 					break;
 				}
 				
 			}
 		}
 		
-		
-		// goes through cards we have decided to discard, returns them to the deck, and replaces them with another card
-		System.out.print("Dicarding cards: ");
-		for(Integer cardIndex: cardsToDiscardIndexArray){
-			PlayingCard card = handOfCards.returnCard(cardIndex);
-			System.out.print(card.toString() + " ");
-			deckOfCards.returnCard(card);
-			handOfCards.receiveCard(deckOfCards.dealNext());
+		return cardsToDiscard;
+	}
+	
+	// goes through the cards in the bit mask, returns them to the deck, and replaces them with another card,
+	// then sorts the hand again, returns the number of cards replaced
+	public int replaceCards(int cardsToDiscard){
+		for(int cardIndex = 0; cardIndex < HandOfCards.CARDS_PER_HAND; cardIndex++){
+			if((cardsToDiscard & (1 << cardIndex)) != 0){
+				PlayingCard card = handOfCards.returnCard(cardIndex);
+				deckOfCards.returnCard(card);
+				handOfCards.receiveCard(deckOfCards.dealNext());
+			}
 		}
-		System.out.println();
 
 		// sorts our hand again
 		handOfCards.sort();
 		
-		return cardsToDiscardIndexArray.size();
+		return Integer.bitCount(cardsToDiscard);
 	}
 	
 	public static void main(String[] args) {
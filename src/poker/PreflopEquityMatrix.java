@@ -0,0 +1,210 @@
+package poker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Heads up all in equity before the flop for every pair of starting hand classes, e.g. AKs against QQ.
+//
+// The 1326 possible pairs of hole cards fall into 169 classes once suits are ignored, 13 pairs, 78 suited and
+// 78 offsuit hands. The generator works out the equity of every class against every other class in parallel
+// and writes the 169 x 169 matrix to a small binary file. At startup the file is memory mapped, so no equity
+// is worked out while the bot is playing and each lookup is a single read.
+public class PreflopEquityMatrix {
+
+	public static int CLASSES = HandIndexer.STARTING_HANDS;
+
+	// file layout: magic number, version, number of classes, then CLASSES * CLASSES floats row by row
+	private static int MAGIC = 0x50464551;  // "PFEQ"
+	private static int VERSION = 1;
+	private static int HEADER_SIZE = 12;
+
+	private ByteBuffer equities;
+
+	private PreflopEquityMatrix(ByteBuffer equities){
+		this.equities = equities;
+	}
+
+	// the class of a pair of hole cards, see HandIndexer.getStartingHandIndex for the layout
+	public static int getHandClass(int card1, int card2){
+		return HandIndexer.getStartingHandIndex(card1, card2);
+	}
+
+	public static int getHandClass(PlayingCard card1, PlayingCard card2){
+		return HandIndexer.getStartingHandIndex(card1, card2);
+	}
+
+	// a name for the class, e.g. "AKs", "QQ" or "72o"
+	public static String getHandClassName(int handClass){
+		return HandIndexer.getStartingHandName(handClass);
+	}
+
+	// equity of a hand in the first class against a hand in the second, split pots count as half a win
+	public float getEquity(int handClass, int opponentHandClass){
+		return equities.getFloat(HEADER_SIZE + (handClass * CLASSES + opponentHandClass) * 4);
+	}
+
+	public float getEquity(int card1, int card2, int opponentCard1, int opponentCard2){
+		return getEquity(getHandClass(card1, card2), getHandClass(opponentCard1, opponentCard2));
+	}
+
+	// memory maps a file written by write()
+	public static PreflopEquityMatrix load(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if(channel.size() < HEADER_SIZE){
+				throw new IOException("Not a preflop equity file: " + file);
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != CLASSES
+					|| channel.size() != HEADER_SIZE + (long) CLASSES * CLASSES * 4){
+				throw new IOException("Not a preflop equity file: " + file);
+			}
+			return new PreflopEquityMatrix(buffer);
+		}
+	}
+
+	public static void write(Path file, float[] matrix) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + matrix.length * 4);
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(CLASSES);
+		for (float equity: matrix) {
+			buffer.putFloat(equity);
+		}
+		buffer.flip();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while(buffer.hasRemaining()){
+				channel.write(buffer);
+			}
+		}
+	}
+
+	//**************************************************************************************************
+	// Generator ***************************************************************************************
+	//**************************************************************************************************
+
+	// works out the matrix in parallel, one task per row, by dealing samplesPerMatchup random hands from each
+	// pair of classes and random boards. Only the cells on or above the diagonal are sampled, the cell below
+	// is 1 minus its mirror
+	public static float[] generate(int samplesPerMatchup, SplittableRandom random){
+		int[][] combos = getCombosByClass();
+		float[] matrix = new float[CLASSES * CLASSES];
+
+		RecursiveAction[] rows = new RecursiveAction[CLASSES];
+		for (int handClass = 0; handClass < CLASSES; handClass++) {
+			final int row = handClass;
+			final SplittableRandom rowRandom = random.split();
+			rows[row] = new RecursiveAction() {
+				protected void compute(){
+					for (int column = row; column < CLASSES; column++) {
+						float equity = (float) sampleEquity(combos[row], combos[column], samplesPerMatchup, rowRandom);
+						matrix[row * CLASSES + column] = equity;
+						if(column != row){
+							matrix[column * CLASSES + row] = 1 - equity;
+						}
+					}
+				}
+			};
+		}
+		ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+			protected void compute(){
+				invokeAll(rows);
+			}
+		});
+		return matrix;
+	}
+
+	// every pair of hole cards in each class, each pair stored as card1 * 64 + card2
+	private static int[][] getCombosByClass(){
+		int[][] combos = new int[CLASSES][];
+		int[] counts = new int[CLASSES];
+		for (int card1 = 0; card1 < PlayingCard.NUMBER_OF_CARDS; card1++) {
+			for (int card2 = card1 + 1; card2 < PlayingCard.NUMBER_OF_CARDS; card2++) {
+				counts[getHandClass(card1, card2)]++;
+			}
+		}
+		for (int handClass = 0; handClass < CLASSES; handClass++) {
+			combos[handClass] = new int[counts[handClass]];
+			counts[handClass] = 0;
+		}
+		for (int card1 = 0; card1 < PlayingCard.NUMBER_OF_CARDS; card1++) {
+			for (int card2 = card1 + 1; card2 < PlayingCard.NUMBER_OF_CARDS; card2++) {
+				int handClass = getHandClass(card1, card2);
+				combos[handClass][counts[handClass]++] = card1 * 64 + card2;
+			}
+		}
+		return combos;
+	}
+
+	// equity of the first class against the second, picking a pair of hole cards from each class which
+	// don't share a card, then a random board from the cards left
+	private static double sampleEquity(int[] combos, int[] opponentCombos, int samples, SplittableRandom random){
+		DeadCardDeck deck = new DeadCardDeck(random);
+		double wins = 0;
+
+		for (int sample = 0; sample < samples; sample++) {
+			int combo, opponentCombo;
+			long deadCards;
+			do {
+				combo = combos[random.nextInt(combos.length)];
+				opponentCombo = opponentCombos[random.nextInt(opponentCombos.length)];
+				deadCards = (1L << (combo >>> 6)) | (1L << (combo & 63)) | (1L << (opponentCombo >>> 6)) | (1L << (opponentCombo & 63));
+			} while(Long.bitCount(deadCards) != 4);
+
+			// the board comes from the cards which aren't in either hand
+			deck.setRemainingCards(DeadCardDeck.ALL_CARDS & ~deadCards);
+			long board = deck.sample(EquityCalculator.BOARD_CARDS, random);
+			int b0 = Long.numberOfTrailingZeros(board);
+			board &= board - 1;
+			int b1 = Long.numberOfTrailingZeros(board);
+			board &= board - 1;
+			int b2 = Long.numberOfTrailingZeros(board);
+			board &= board - 1;
+			int b3 = Long.numberOfTrailingZeros(board);
+			board &= board - 1;
+			int b4 = Long.numberOfTrailingZeros(board);
+
+			int ourValue = HandEvaluator.evaluate(combo >>> 6, combo & 63, b0, b1, b2, b3, b4);
+			int theirValue = HandEvaluator.evaluate(opponentCombo >>> 6, opponentCombo & 63, b0, b1, b2, b3, b4);
+			if(ourValue > theirValue){
+				wins += 1;
+			}else if(ourValue == theirValue){
+				wins += 0.5;
+			}
+		}
+		return wins / samples;
+	}
+
+	// usage: PreflopEquityMatrix [file] [samples per matchup]
+	// generates the file if it doesn't exist yet, then loads it and prints a few matchups
+	public static void main(String[] args) throws IOException {
+		Path file = Paths.get(args.length > 0 ? args[0] : "preflop-equity.bin");
+		int samplesPerMatchup = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+
+		if(!Files.exists(file)){
+			long startTime = System.currentTimeMillis();
+			float[] matrix = generate(samplesPerMatchup, new SplittableRandom());
+			write(file, matrix);
+			System.out.println("Generated " + file + " in " + (System.currentTimeMillis() - startTime) / 1000.0 + " s");
+		}
+
+		long startTime = System.nanoTime();
+		PreflopEquityMatrix matrix = load(file);
+		System.out.println("Loaded in " + (System.nanoTime() - startTime) / 1000 + " us");
+
+		int aces = getHandClass(PlayingCard.getCard("A", 'H'), PlayingCard.getCard("A", 'S'));
+		int kings = getHandClass(PlayingCard.getCard("K", 'H'), PlayingCard.getCard("K", 'S'));
+		int aceKingSuited = getHandClass(PlayingCard.getCard("A", 'H'), PlayingCard.getCard("K", 'H'));
+		int sevenTwoOffsuit = getHandClass(PlayingCard.getCard("7", 'H'), PlayingCard.getCard("2", 'S'));
+		int[][] matchups = {{aces, kings}, {aceKingSuited, kings}, {sevenTwoOffsuit, aces}, {aces, aces}};
+		for (int[] matchup: matchups) {
+			System.out.println(getHandClassName(matchup[0]) + " against " + getHandClassName(matchup[1]) + ": " + matrix.getEquity(matchup[0], matchup[1]));
+		}
+	}
+}
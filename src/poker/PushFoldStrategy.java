@@ -0,0 +1,389 @@
+package poker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.random.RandomGenerator;
+
+// Heads up push or fold Hold'em strategies, worked out by counterfactual regret minimisation (CFR).
+//
+// In the push or fold game the small blind (the button) either goes all in or folds, and the big blind either calls
+// or folds, with both players starting with the same stack. With short stacks this is close to how the whole hand
+// should be played. Each player's information set is just their starting hand class (see HandIndexer) and their
+// position, so for each stack size there are 2 x 169 information sets with 2 actions each.
+//
+// The solver keeps its regrets and strategy totals in flat float arrays indexed by information set and action, and
+// updates the 169 information sets of a player in parallel on a ForkJoinPool. The payoffs come from the preflop
+// equity matrix, with each pair of classes weighted by how many ways they can be dealt without sharing a card.
+//
+// The average strategy for every stack size from 1 big blind up is written to a small binary file which, like the
+// preflop equities, is memory mapped at startup so every lookup is a single read.
+public class PushFoldStrategy {
+
+	public static int CLASSES = HandIndexer.STARTING_HANDS;
+	public static int SMALL_BLIND = 0;   // positions
+	public static int BIG_BLIND = 1;
+
+	// file layout: magic number, version, number of classes, largest stack, then for each stack from 1 big blind the
+	// chance of pushing for each class followed by the chance of calling for each class
+	private static int MAGIC = 0x50465354;  // "PFST"
+	private static int VERSION = 1;
+	private static int HEADER_SIZE = 16;
+
+	private static int ACTIONS = 2;  // fold and push, or fold and call
+	private static int FOLD = 0;
+	private static int PLAY = 1;
+	private static int CLASSES_PER_TASK = 43;  // 4 tasks for each player's update
+
+	private ByteBuffer strategy;
+	private int maxStack;
+
+	private PushFoldStrategy(ByteBuffer strategy, int maxStack){
+		this.strategy = strategy;
+		this.maxStack = maxStack;
+	}
+
+	// chance the player in position with a hand of this class goes all in (small blind) or calls (big blind),
+	// stacks bigger than the largest one worked out use the largest one
+	public float getProbability(int position, int stackInBigBlinds, int handClass){
+		int stack = Math.max(1, Math.min(stackInBigBlinds, maxStack));
+		return strategy.getFloat(HEADER_SIZE + (((stack - 1) * 2 + position) * CLASSES + handClass) * 4);
+	}
+
+	public float getPushProbability(int stackInBigBlinds, int card1, int card2){
+		return getProbability(SMALL_BLIND, stackInBigBlinds, HandIndexer.getStartingHandIndex(card1, card2));
+	}
+
+	public float getCallProbability(int stackInBigBlinds, int card1, int card2){
+		return getProbability(BIG_BLIND, stackInBigBlinds, HandIndexer.getStartingHandIndex(card1, card2));
+	}
+
+	// plays the mixed strategy, true to push or call
+	public boolean shouldPlay(int position, int stackInBigBlinds, int card1, int card2, RandomGenerator random){
+		float probability = getProbability(position, stackInBigBlinds, HandIndexer.getStartingHandIndex(card1, card2));
+		return probability >= 1 || (probability > 0 && random.nextFloat() < probability);
+	}
+
+	public int getMaxStack(){
+		return maxStack;
+	}
+
+	// memory maps a file written by write()
+	public static PushFoldStrategy load(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if(channel.size() < HEADER_SIZE){
+				throw new IOException("Not a push or fold strategy file: " + file);
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			int maxStack = buffer.getInt(12);
+			if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != CLASSES || maxStack < 1
+					|| channel.size() != HEADER_SIZE + (long) maxStack * 2 * CLASSES * 4){
+				throw new IOException("Not a push or fold strategy file: " + file);
+			}
+			return new PushFoldStrategy(buffer, maxStack);
+		}
+	}
+
+	// strategies holds, for each stack from 1 big blind up, the push chances then the call chances by class
+	public static void write(Path file, float[] strategies) throws IOException {
+		int maxStack = strategies.length / (2 * CLASSES);
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + strategies.length * 4);
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(CLASSES).putInt(maxStack);
+		for (float probability: strategies) {
+			buffer.putFloat(probability);
+		}
+		buffer.flip();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while(buffer.hasRemaining()){
+				channel.write(buffer);
+			}
+		}
+	}
+
+	//**************************************************************************************************
+	// Solver ******************************************************************************************
+	//**************************************************************************************************
+
+	// the average strategies after the given number of CFR iterations for every stack from 1 to maxStack big blinds,
+	// in the layout write() takes
+	public static float[] solve(PreflopEquityMatrix equities, int maxStack, int iterations){
+		float[] weights = getMatchupWeights();
+		float[] equityTable = new float[CLASSES * CLASSES];
+		for (int handClass = 0; handClass < CLASSES; handClass++) {
+			for (int opponentClass = 0; opponentClass < CLASSES; opponentClass++) {
+				equityTable[handClass * CLASSES + opponentClass] = equities.getEquity(handClass, opponentClass);
+			}
+		}
+
+		float[] strategies = new float[maxStack * 2 * CLASSES];
+		for (int stack = 1; stack <= maxStack; stack++) {
+			Solver solver = new Solver(weights, equityTable, stack, ForkJoinPool.commonPool());
+			solver.iterate(iterations);
+			solver.getAverageStrategy(strategies, (stack - 1) * 2 * CLASSES);
+		}
+		return strategies;
+	}
+
+	// how many ways each pair of classes can be dealt to the two players without them sharing a card
+	static float[] getMatchupWeights(){
+		float[] weights = new float[CLASSES * CLASSES];
+		int[] classes = new int[PlayingCard.NUMBER_OF_CARDS * PlayingCard.NUMBER_OF_CARDS];
+		for (int card1 = 0; card1 < PlayingCard.NUMBER_OF_CARDS; card1++) {
+			for (int card2 = card1 + 1; card2 < PlayingCard.NUMBER_OF_CARDS; card2++) {
+				classes[card1 * PlayingCard.NUMBER_OF_CARDS + card2] = HandIndexer.getStartingHandIndex(card1, card2);
+			}
+		}
+		for (int card1 = 0; card1 < PlayingCard.NUMBER_OF_CARDS; card1++) {
+			for (int card2 = card1 + 1; card2 < PlayingCard.NUMBER_OF_CARDS; card2++) {
+				int handClass = classes[card1 * PlayingCard.NUMBER_OF_CARDS + card2];
+				long dead = (1L << card1) | (1L << card2);
+				for (int card3 = 0; card3 < PlayingCard.NUMBER_OF_CARDS; card3++) {
+					if((dead & (1L << card3)) != 0){
+						continue;
+					}
+					for (int card4 = card3 + 1; card4 < PlayingCard.NUMBER_OF_CARDS; card4++) {
+						if((dead & (1L << card4)) == 0){
+							weights[handClass * CLASSES + classes[card3 * PlayingCard.NUMBER_OF_CARDS + card4]]++;
+						}
+					}
+				}
+			}
+		}
+		return weights;
+	}
+
+	// CFR+ for one stack size: regrets are kept at 0 or above, the players update in turn, and the average
+	// strategy weights iteration t by t. Payoffs are in big blinds won from the start of the hand, the small blind
+	// having put in 0.5 and the big blind 1
+	static class Solver {
+		private float[] weights;
+		private float[] equities;
+		private float stack;
+		private ForkJoinPool pool;
+
+		// by information set, position * CLASSES + hand class, and action
+		private float[] regrets = new float[2 * CLASSES * ACTIONS];
+		private float[] strategySums = new float[2 * CLASSES * ACTIONS];
+		private float[] strategy = new float[2 * CLASSES];  // chance of pushing or calling this iteration
+		private int iteration;
+
+		Solver(float[] weights, float[] equities, float stack, ForkJoinPool pool){
+			this.weights = weights;
+			this.equities = equities;
+			this.stack = stack;
+			this.pool = pool;
+			for (int infoset = 0; infoset < strategy.length; infoset++) {
+				strategy[infoset] = 0.5f;
+			}
+		}
+
+		void iterate(int iterations){
+			for (int i = 0; i < iterations; i++) {
+				iteration++;
+				pool.invoke(new UpdateTask(this, SMALL_BLIND, 0, CLASSES));
+				pool.invoke(new UpdateTask(this, BIG_BLIND, 0, CLASSES));
+			}
+		}
+
+		// value of each action for one information set against the other player's strategy, weighted by how
+		// often the other player holds each class, which is all the counterfactual values need as nothing happens
+		// before the small blind acts
+		private void update(int position, int handClass){
+			double playValue = 0;
+			double foldValue = 0;
+			if(position == SMALL_BLIND){
+				for (int opponentClass = 0; opponentClass < CLASSES; opponentClass++) {
+					float weight = weights[handClass * CLASSES + opponentClass];
+					float call = strategy[CLASSES + opponentClass];
+					playValue += weight * ((1 - call) + call * stack * (2 * equities[handClass * CLASSES + opponentClass] - 1));
+					foldValue -= weight * 0.5;
+				}
+			}else{
+				for (int opponentClass = 0; opponentClass < CLASSES; opponentClass++) {
+					float weight = weights[handClass * CLASSES + opponentClass] * strategy[opponentClass];
+					playValue += weight * stack * (2 * equities[handClass * CLASSES + opponentClass] - 1);
+					foldValue -= weight;
+				}
+			}
+
+			int infoset = position * CLASSES + handClass;
+			float play = strategy[infoset];
+			double value = play * playValue + (1 - play) * foldValue;
+			int first = infoset * ACTIONS;
+			strategySums[first + FOLD] += iteration * (1 - play);
+			strategySums[first + PLAY] += iteration * play;
+			regrets[first + FOLD] = (float) Math.max(0, regrets[first + FOLD] + foldValue - value);
+			regrets[first + PLAY] = (float) Math.max(0, regrets[first + PLAY] + playValue - value);
+
+			// regret matching for the next iteration
+			float total = regrets[first + FOLD] + regrets[first + PLAY];
+			strategy[infoset] = total > 0 ? regrets[first + PLAY] / total : 0.5f;
+		}
+
+		float getAverageProbability(int position, int handClass){
+			int first = (position * CLASSES + handClass) * ACTIONS;
+			float total = strategySums[first + FOLD] + strategySums[first + PLAY];
+			return total > 0 ? strategySums[first + PLAY] / total : 0.5f;
+		}
+
+		void getAverageStrategy(float[] strategies, int offset){
+			for (int position = SMALL_BLIND; position <= BIG_BLIND; position++) {
+				for (int handClass = 0; handClass < CLASSES; handClass++) {
+					strategies[offset + position * CLASSES + handClass] = getAverageProbability(position, handClass);
+				}
+			}
+		}
+
+		// how much, in big blinds a hand, the average strategy loses on average over the two positions against a
+		// player who knows it and plays the best response, 0 at an equilibrium
+		double getExploitability(){
+			double smallBlindBest = 0;
+			double bigBlindBest = 0;
+			double totalWeight = 0;
+			for (int handClass = 0; handClass < CLASSES; handClass++) {
+				double pushValue = 0;
+				double foldValue = 0;
+				double callValue = 0;
+				double bigBlindFoldValue = 0;
+				double pushedFoldsValue = 0;  // the big blind wins the small blind when it folds
+				for (int opponentClass = 0; opponentClass < CLASSES; opponentClass++) {
+					float weight = weights[handClass * CLASSES + opponentClass];
+					float equity = equities[handClass * CLASSES + opponentClass];
+					float call = getAverageProbability(BIG_BLIND, opponentClass);
+					float push = getAverageProbability(SMALL_BLIND, opponentClass);
+					pushValue += weight * ((1 - call) + call * stack * (2 * equity - 1));
+					foldValue -= weight * 0.5;
+					callValue += weight * push * stack * (2 * equity - 1);
+					bigBlindFoldValue -= weight * push;
+					pushedFoldsValue += weight * (1 - push) * 0.5;
+					totalWeight += weight;
+				}
+				smallBlindBest += Math.max(pushValue, foldValue);
+				bigBlindBest += Math.max(callValue, bigBlindFoldValue) + pushedFoldsValue;
+			}
+			return (smallBlindBest + bigBlindBest) / 2 / totalWeight;
+		}
+	}
+
+	// updates the information sets of one player for a range of classes, splitting the range between tasks
+	private static class UpdateTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private Solver solver;
+		private int position;
+		private int from;
+		private int to;
+
+		UpdateTask(Solver solver, int position, int from, int to){
+			this.solver = solver;
+			this.position = position;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected void compute(){
+			if(to - from > CLASSES_PER_TASK){
+				int middle = (from + to) >>> 1;
+				invokeAll(new UpdateTask(solver, position, from, middle), new UpdateTask(solver, position, middle, to));
+				return;
+			}
+			for (int handClass = from; handClass < to; handClass++) {
+				solver.update(position, handClass);
+			}
+		}
+	}
+
+	// usage: PushFoldStrategy [file] [largest stack in big blinds] [iterations]
+	// solves and writes the file if it doesn't exist yet, generating the preflop equities first if needed,
+	// then loads it and prints the hands pushed and called at a few stack sizes
+	public static void main(String[] args) throws IOException {
+		Path file = Paths.get(args.length > 0 ? args[0] : "push-fold-strategy.bin");
+		int maxStack = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+		if(!Files.exists(file)){
+			Path equityFile = Paths.get("preflop-equity.bin");
+			if(!Files.exists(equityFile)){
+				PreflopEquityMatrix.write(equityFile, PreflopEquityMatrix.generate(100000, new SplittableRandom()));
+			}
+			PreflopEquityMatrix equities = PreflopEquityMatrix.load(equityFile);
+
+			// how close a few stack sizes get to an equilibrium with more iterations
+			float[] weights = getMatchupWeights();
+			float[] equityTable = new float[CLASSES * CLASSES];
+			for (int handClass = 0; handClass < CLASSES; handClass++) {
+				for (int opponentClass = 0; opponentClass < CLASSES; opponentClass++) {
+					equityTable[handClass * CLASSES + opponentClass] = equities.getEquity(handClass, opponentClass);
+				}
+			}
+			for (int stack: new int[] {5, 10, 20}) {
+				Solver solver = new Solver(weights, equityTable, stack, ForkJoinPool.commonPool());
+				StringBuilder progress = new StringBuilder(stack + " big blinds, exploitability in milli big blinds a hand:");
+				for (int done = 0; done < iterations; done += iterations / 4) {
+					solver.iterate(iterations / 4);
+					progress.append(String.format(" %.3f after %d", solver.getExploitability() * 1000, done + iterations / 4));
+				}
+				System.out.println(progress);
+			}
+
+			long startTime = System.currentTimeMillis();
+			write(file, solve(equities, maxStack, iterations));
+			System.out.println("Solved 1 to " + maxStack + " big blinds in " + (System.currentTimeMillis() - startTime) / 1000.0 + " s");
+		}
+
+		PushFoldStrategy strategy = load(file);
+		for (int stack: new int[] {2, 5, 10, 15, 20}) {
+			double pushed = 0;
+			double called = 0;
+			for (int handClass = 0; handClass < CLASSES; handClass++) {
+				pushed += HandIndexer.getStartingHandCombinations(handClass) * strategy.getProbability(SMALL_BLIND, stack, handClass);
+				called += HandIndexer.getStartingHandCombinations(handClass) * strategy.getProbability(BIG_BLIND, stack, handClass);
+			}
+			System.out.println(String.format("%2d big blinds: push %.1f%% of hands, call %.1f%%", stack, pushed / 13.26, called / 13.26));
+		}
+
+		int[] handClasses = {HandIndexer.getStartingHandIndex(PlayingCard.getCard("A", 'H').getId(), PlayingCard.getCard("2", 'S').getId()),
+				HandIndexer.getStartingHandIndex(PlayingCard.getCard("K", 'H').getId(), PlayingCard.getCard("9", 'H').getId()),
+				HandIndexer.getStartingHandIndex(PlayingCard.getCard("5", 'H').getId(), PlayingCard.getCard("5", 'S').getId()),
+				HandIndexer.getStartingHandIndex(PlayingCard.getCard("7", 'H').getId(), PlayingCard.getCard("2", 'S').getId())};
+		for (int handClass: handClasses) {
+			System.out.println(String.format("%-4s at 10 big blinds: push %.2f, call %.2f", HandIndexer.getStartingHandName(handClass),
+					strategy.getProbability(SMALL_BLIND, 10, handClass), strategy.getProbability(BIG_BLIND, 10, handClass)));
+		}
+
+		// a player using the strategy against one who pushes and calls with everything, at 10 big blinds
+		HoldemTable table = new HoldemTable(2, 1, 2, 20);
+		SplittableRandom random = new SplittableRandom(42);
+		long hands = 1_000_000;
+		long won = 0;
+		for (long hand = 0; hand < hands; hand++) {
+			table.startHand(random);
+			while(!table.isHandOver()){
+				int seat = table.getSeatToAct();
+				int position = seat == table.getButton() ? SMALL_BLIND : BIG_BLIND;
+				boolean play = seat == 1 || strategy.shouldPlay(position, 10, table.getHoleCard(0, 0), table.getHoleCard(0, 1), random);
+				if(!play){
+					table.fold();
+				}else if(table.canRaise()){
+					table.raiseTo(table.getMaxRaiseTo());
+				}else if(table.canCheck()){
+					table.check();
+				}else{
+					table.call();
+				}
+			}
+			won += table.getStack(0) - 20;
+			table.setStack(0, 20);
+			table.setStack(1, 20);
+		}
+		System.out.println(String.format("against a player pushing and calling everything: %.3f big blinds a hand", won / 2.0 / hands));
+	}
+}
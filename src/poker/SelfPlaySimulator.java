@@ -0,0 +1,373 @@
+package poker;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+// Plays 5 card draw between PokerPlayers at many tables at once, to see how the players do over a very large number
+// of hands. Each table has its own deck, its own random numbers split from the simulator's seed, and its own
+// players, so tables never share anything while playing. A hand is dealt, every player discards, and the best
+// final hand wins the pot (split on a tie).
+//
+// Tables can be run either with a thread per table, using virtual threads when the JVM has them, or as a batch
+// of fork/join tasks which split the tables between the threads of a ForkJoinPool. The counts are added up in
+// LongAdders, each table adding its own counts once it has played all its hands, so the threads don't fight over
+// a shared counter.
+public class SelfPlaySimulator {
+
+	public static enum Mode {THREAD_PER_TABLE, FORK_JOIN};
+
+	public static int PLAYERS_PER_TABLE = 5;
+
+	private static int TABLES_PER_TASK = 4;  // fork/join tasks stop splitting at this many tables
+
+	private int playersPerTable;
+	private DrawEvaluator[] drawEvaluators;  // for each seat, null to use the discard probabilities
+	private AnytimeDecider[] anytimeDeciders;  // for each seat, null when the seat doesn't sample its discards
+	private long[] timeBudgets;
+	private HandHistoryWriter handHistory;   // null when hands aren't recorded
+
+	// counts added to by every table
+	private LongAdder handsPlayed = new LongAdder();
+	private LongAdder cardsDiscarded = new LongAdder();
+	private LongAdder splitPots = new LongAdder();
+	private LongAdder[] potsWon;          // by seat, in shares of POT_SHARES, so split pots stay whole numbers
+	private LongAdder[] finalHandTypes;   // by HandOfCards.Type ordinal
+
+	private static long POT_SHARES = 60;  // divides evenly between any number of players from 1 to 6
+
+	public SelfPlaySimulator(){
+		this(PLAYERS_PER_TABLE);
+	}
+
+	public SelfPlaySimulator(int playersPerTable){
+		// every player can be dealt a hand and replacements for the most cards they can discard
+		if(playersPerTable < 2 || playersPerTable * (HandOfCards.CARDS_PER_HAND + PokerPlayer.MAX_CARDS_TO_DISCARD) > PlayingCard.NUMBER_OF_CARDS){
+			throw new IllegalArgumentException("Can't play " + playersPerTable + " players at a table");
+		}
+		this.playersPerTable = playersPerTable;
+		this.drawEvaluators = new DrawEvaluator[playersPerTable];
+		this.anytimeDeciders = new AnytimeDecider[playersPerTable];
+		this.timeBudgets = new long[playersPerTable];
+		potsWon = new LongAdder[playersPerTable];
+		for (int seat = 0; seat < playersPerTable; seat++) {
+			potsWon[seat] = new LongAdder();
+		}
+		finalHandTypes = new LongAdder[HandOfCards.Type.values().length];
+		for (int i = 0; i < finalHandTypes.length; i++) {
+			finalHandTypes[i] = new LongAdder();
+		}
+	}
+
+	// makes the player in this seat at every table choose discards with the draw evaluator, so its results
+	// can be compared with the other seats
+	public void setDrawEvaluator(int seat, DrawEvaluator drawEvaluator){
+		drawEvaluators[seat] = drawEvaluator;
+	}
+
+	// makes the player in this seat at every table sample its discards for timeBudget nanoseconds each
+	public void setAnytimeDecider(int seat, AnytimeDecider anytimeDecider, long timeBudget){
+		anytimeDeciders[seat] = anytimeDecider;
+		timeBudgets[seat] = timeBudget;
+	}
+
+	// records every player's hand at every table to the writer, or stops recording if it is null
+	public void setHandHistory(HandHistoryWriter handHistory){
+		this.handHistory = handHistory;
+	}
+
+	// plays handsPerTable hands at each of the tables and returns the counts of this run
+	public Report run(int tables, long handsPerTable, long seed, Mode mode){
+		reset();
+		SplittableRandom random = new SplittableRandom(seed);
+		Table[] allTables = new Table[tables];
+		for (int i = 0; i < tables; i++) {
+			allTables[i] = new Table(i, random.split(), handsPerTable);
+		}
+
+		long startTime = System.nanoTime();
+		if(mode == Mode.THREAD_PER_TABLE){
+			runThreadPerTable(allTables);
+		}else{
+			ForkJoinPool.commonPool().invoke(new TablesTask(allTables, 0, tables));
+		}
+		return new Report(System.nanoTime() - startTime);
+	}
+
+	// whether run() with THREAD_PER_TABLE gets virtual threads, which came in with Java 21. Before that
+	// each table gets a thread from a pool the size of the number of processors
+	public static boolean hasVirtualThreads(){
+		return getVirtualThreadFactory() != null;
+	}
+
+	private static Method getVirtualThreadFactory(){
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	private void runThreadPerTable(Table[] tables){
+		ExecutorService executor = newThreadPerTableExecutor();
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>(tables.length);
+			for (Table table: tables) {
+				futures.add(executor.submit(table::play));
+			}
+			for (Future<?> future: futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while the tables were playing", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("A table failed", e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	// called through reflection so the simulator still compiles and runs on Java 17
+	private static ExecutorService newThreadPerTableExecutor(){
+		Method factory = getVirtualThreadFactory();
+		if(factory != null){
+			try {
+				return (ExecutorService) factory.invoke(null);
+			} catch (ReflectiveOperationException e) {
+				// falls through to platform threads
+			}
+		}
+		return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+	}
+
+	private void reset(){
+		handsPlayed.reset();
+		cardsDiscarded.reset();
+		splitPots.reset();
+		for (LongAdder adder: potsWon) {
+			adder.reset();
+		}
+		for (LongAdder adder: finalHandTypes) {
+			adder.reset();
+		}
+	}
+
+	// splits a range of tables in half until it is small enough to play on one thread
+	private class TablesTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private Table[] tables;
+		private int from;
+		private int to;
+
+		TablesTask(Table[] tables, int from, int to){
+			this.tables = tables;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected void compute(){
+			if(to - from <= TABLES_PER_TASK){
+				for (int i = from; i < to; i++) {
+					tables[i].play();
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new TablesTask(tables, from, middle), new TablesTask(tables, middle, to));
+		}
+	}
+
+	// one table, keeps its counts in plain fields while playing and adds them to the simulator's at the end
+	private class Table {
+		private int number;
+		private SplittableRandom random;
+		private DeckOfCards deck;
+		private long hands;
+
+		private long cardsDiscarded;
+		private long splitPots;
+		private long[] potsWon = new long[playersPerTable];
+		private long[] finalHandTypes = new long[HandOfCards.Type.values().length];
+
+		Table(int number, SplittableRandom random, long hands){
+			this.number = number;
+			this.random = random;
+			this.deck = new DeckOfCards(random.split());
+			this.hands = hands;
+		}
+
+		void play(){
+			PokerPlayer[] players = new PokerPlayer[playersPerTable];
+			int[] cards = new int[playersPerTable * HandOfCards.CARDS_PER_HAND];
+			ShowdownResolver resolver = new ShowdownResolver(playersPerTable);
+			long everyone = (1L << playersPerTable) - 1;
+			int[][] initialCards = new int[playersPerTable][HandOfCards.CARDS_PER_HAND];
+			int[] discardMasks = new int[playersPerTable];
+			HandHistoryWriter.Buffer history = handHistory == null ? null : handHistory.newBuffer();
+			for (long hand = 0; hand < hands; hand++) {
+				deck.reset();
+				deck.shuffle();
+				for (int seat = 0; seat < playersPerTable; seat++) {
+					players[seat] = new PokerPlayer(deck);
+					players[seat].setDrawEvaluator(drawEvaluators[seat]);
+					players[seat].setAnytimeDecider(anytimeDeciders[seat], timeBudgets[seat]);
+				}
+				for (int seat = 0; seat < playersPerTable; seat++) {
+					HandOfCards handOfCards = players[seat].getHandOfCards();
+					for (int i = 0; i < HandOfCards.CARDS_PER_HAND; i++) {
+						initialCards[seat][i] = handOfCards.getCardId(i);
+					}
+					discardMasks[seat] = players[seat].discard(random, false);
+					cardsDiscarded += Integer.bitCount(discardMasks[seat]);
+					for (int i = 0; i < HandOfCards.CARDS_PER_HAND; i++) {
+						cards[seat * HandOfCards.CARDS_PER_HAND + i] = handOfCards.getCardId(i);
+					}
+				}
+
+				// the players with the best final hand share the pot
+				int numberOfWinners = resolver.resolve(cards, playersPerTable, everyone);
+				for (int i = 0; i < numberOfWinners; i++) {
+					potsWon[resolver.getWinner(i)] += POT_SHARES / numberOfWinners;
+				}
+				if(numberOfWinners > 1){
+					splitPots++;
+				}
+				for (int seat = 0; seat < playersPerTable; seat++) {
+					finalHandTypes[HandEvaluator.getHandType(resolver.getValue(seat)).ordinal()]++;
+				}
+
+				if(history != null){
+					long winners = resolver.getWinnerMask();
+					for (int seat = 0; seat < playersPerTable; seat++) {
+						record(history, hand, seat, initialCards[seat], discardMasks[seat], players[seat].getHandOfCards(),
+								resolver.getValue(seat), (winners & (1L << seat)) != 0 ? numberOfWinners : 0);
+					}
+				}
+			}
+			if(history != null){
+				flush(history);
+			}
+			addCounts();
+		}
+
+		private void record(HandHistoryWriter.Buffer history, long hand, int seat, int[] initialCards, int discardMask, HandOfCards finalHand,
+				int gameValue, int winners){
+			try {
+				history.record(hand, number, seat, playersPerTable, initialCards, discardMask, finalHand, gameValue, winners);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private void flush(HandHistoryWriter.Buffer history){
+			try {
+				history.flush();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private void addCounts(){
+			handsPlayed.add(hands);
+			SelfPlaySimulator.this.cardsDiscarded.add(cardsDiscarded);
+			SelfPlaySimulator.this.splitPots.add(splitPots);
+			for (int seat = 0; seat < playersPerTable; seat++) {
+				SelfPlaySimulator.this.potsWon[seat].add(potsWon[seat]);
+			}
+			for (int i = 0; i < finalHandTypes.length; i++) {
+				SelfPlaySimulator.this.finalHandTypes[i].add(finalHandTypes[i]);
+			}
+		}
+	}
+
+	// the counts of a run and how long it took
+	public class Report {
+		private long nanos;
+		private long hands = handsPlayed.sum();
+		private long discards = cardsDiscarded.sum();
+		private long splits = splitPots.sum();
+		private long[] shares = new long[playersPerTable];
+		private long[] handTypes = new long[finalHandTypes.length];
+
+		private Report(long nanos){
+			this.nanos = nanos;
+			for (int seat = 0; seat < playersPerTable; seat++) {
+				shares[seat] = potsWon[seat].sum();
+			}
+			for (int i = 0; i < handTypes.length; i++) {
+				handTypes[i] = finalHandTypes[i].sum();
+			}
+		}
+
+		public long getHands(){
+			return hands;
+		}
+
+		public double getHandsPerSecond(){
+			return hands * 1e9 / nanos;
+		}
+
+		public double getSecondsTaken(){
+			return nanos / 1e9;
+		}
+
+		// fraction of all the pots won by the player in this seat
+		public double getPotsWon(int seat){
+			return (double) shares[seat] / (POT_SHARES * hands);
+		}
+
+		public double getSplitPotFraction(){
+			return (double) splits / hands;
+		}
+
+		public double getCardsDiscardedPerPlayer(){
+			return (double) discards / (hands * playersPerTable);
+		}
+
+		public long getFinalHandTypeCount(HandOfCards.Type type){
+			return handTypes[type.ordinal()];
+		}
+
+		public String toString(){
+			StringBuilder builder = new StringBuilder();
+			builder.append(String.format("%d hands in %.2f s, %.0f hands/sec%n", hands, getSecondsTaken(), getHandsPerSecond()));
+			builder.append(String.format("%.3f cards discarded per player, %.4f of pots split%n", getCardsDiscardedPerPlayer(), getSplitPotFraction()));
+			for (int seat = 0; seat < playersPerTable; seat++) {
+				builder.append(String.format("seat %d won %.4f of pots%n", seat + 1, getPotsWon(seat)));
+			}
+			for (HandOfCards.Type type: HandOfCards.Type.values()) {
+				builder.append(String.format("%-14s %.6f%n", type, (double) getFinalHandTypeCount(type) / (hands * playersPerTable)));
+			}
+			return builder.toString();
+		}
+	}
+
+	// usage: SelfPlaySimulator [tables] [hands per table] [THREAD_PER_TABLE or FORK_JOIN]
+	public static void main(String[] args) {
+		int tables = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		long handsPerTable = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+		Mode mode = args.length > 2 ? Mode.valueOf(args[2]) : Mode.FORK_JOIN;
+
+		System.out.println("Virtual threads " + (hasVirtualThreads() ? "available" : "not available, using a thread pool"));
+		SelfPlaySimulator simulator = new SelfPlaySimulator();
+		System.out.println(simulator.run(tables, handsPerTable, 42, mode));
+
+		// seat 1 picks its discards by expected strength against 4 players using the discard probabilities,
+		// over fewer hands as working out each new hand for the draw evaluator takes a while
+		simulator.setDrawEvaluator(0, new DrawEvaluator());
+		System.out.println("Seat 1 using the draw evaluator");
+		System.out.println(simulator.run(Math.min(tables, 5), Math.min(handsPerTable, 10), 43, mode));
+	}
+}
@@ -0,0 +1,404 @@
+package poker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// 7 card evaluator which values a hand with 7 table reads and nothing else, one read per card.
+//
+// The table is a state machine. Each state stands for the cards seen so far, and has a row of 52 entries, one for
+// each card which could come next. The entry is the position of the row of the state after that card (the state
+// number times 52, so no multiplying is needed while evaluating), and for the 6 card states it is the game value
+// of the 7 card hand. Evaluating is
+//
+//     p = table[c0]; p = table[p + c1]; ... p = table[p + c5]; value = table[p + c6]
+//
+// Two sets of cards are the same state if they have the same number of each rank and the same cards in every suit
+// which could still make a flush with the cards still to come. Once a suit can't make a flush, which cards are in
+// it doesn't matter, so most of the suit information is thrown away after 3 or 4 cards, which keeps the number of
+// states down. The cards given must all be different, cards in a suit which can't make a flush any more aren't
+// checked for being dealt twice.
+//
+// The table has about 613,000 states and takes 120 MB, so it is built once with generate() (a few seconds) and
+// written to a file, which is memory mapped when it is loaded. It lives outside the heap, loads straight away, and
+// is shared by every process using the same file. When there is no file open() falls back to HandEvaluator, which
+// gives the same values.
+//
+// For hands picked at random each read is likely a cache miss and the computed HandEvaluator is quicker. The table
+// pays off when going through hands in order with nextState(), where hands share the states of their first cards.
+public class SevenCardRankTable {
+
+	private static int CARDS = PlayingCard.NUMBER_OF_CARDS;
+	private static int RANKS = 13;
+	private static int SUITS = 4;
+	private static int RANK_COUNT_BITS = 3;    // bits for the count of each rank in a state's rank counts
+	private static int SUIT_MASK = (1 << RANKS) - 1;
+
+	// file layout: magic number, version, number of states, then the rows of the states, 52 little endian ints each
+	private static int MAGIC = 0x37435254;  // "7CRT"
+	private static int VERSION = 1;
+	private static int HEADER_SIZE = 12;
+
+	private IntBuffer table;  // null when falling back to HandEvaluator
+	private int states;
+
+	private SevenCardRankTable(IntBuffer table, int states){
+		this.table = table;
+		this.states = states;
+	}
+
+	// memory maps a file written by generate()
+	public static SevenCardRankTable load(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if(channel.size() < HEADER_SIZE){
+				throw new IOException("Not a 7 card rank table: " + file);
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			int states = buffer.getInt(8);
+			if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || channel.size() != HEADER_SIZE + (long) states * CARDS * 4){
+				throw new IOException("Not a 7 card rank table: " + file);
+			}
+			buffer.position(HEADER_SIZE);
+			return new SevenCardRankTable(buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer(), states);
+		}
+	}
+
+	// loads the table from the file, or evaluates with HandEvaluator if the file doesn't exist
+	public static SevenCardRankTable open(Path file) throws IOException {
+		if(!Files.exists(file)){
+			return new SevenCardRankTable(null, 0);
+		}
+		return load(file);
+	}
+
+	// whether hands are valued from the mapped table, rather than by HandEvaluator
+	public boolean isMapped(){
+		return table != null;
+	}
+
+	public int getNumberOfStates(){
+		return states;
+	}
+
+	// evaluates the best 5 card hand out of 7 different card ids, the same value as HandEvaluator.evaluate()
+	public int evaluate(int c0, int c1, int c2, int c3, int c4, int c5, int c6){
+		IntBuffer table = this.table;
+		if(table == null){
+			return HandEvaluator.evaluate(c0, c1, c2, c3, c4, c5, c6);
+		}
+		int p = table.get(c0);
+		p = table.get(p + c1);
+		p = table.get(p + c2);
+		p = table.get(p + c3);
+		p = table.get(p + c4);
+		p = table.get(p + c5);
+		return table.get(p + c6);
+	}
+
+	// for going through many hands which share their first cards, e.g. every board in nested loops, the state after
+	// the first cards can be kept and reused. Start from state 0, each card moves to the next state, and the 7th card
+	// gives the game value. Only works on a mapped table
+	public int nextState(int state, int card){
+		if(table == null){
+			throw new IllegalStateException("No rank table has been loaded");
+		}
+		return table.get(state + card);
+	}
+
+	//**************************************************************************************************
+	// Generator ***************************************************************************************
+	//**************************************************************************************************
+
+	// builds the table and writes it to the file, returns the number of states.
+	//
+	// States are numbered as they are found, a level (number of cards) at a time starting from the state with no
+	// cards, so the rows can be written in order as each state is gone through and the table is never held in memory.
+	// A state is kept as its rank counts (3 bits per rank) and the rank masks of the suits which can still make a
+	// flush (13 bits per suit), and looked up by those in an open addressing hash table of state numbers
+	public static int generate(Path file) throws IOException {
+		StateTable stateTable = new StateTable();
+		stateTable.add(0, 0);
+
+		int[] rankCounts = new int[RANKS];
+		ByteBuffer row = ByteBuffer.allocateDirect(CARDS * 4 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			channel.position(HEADER_SIZE);
+
+			for (int state = 0; state < stateTable.size(); state++) {
+				long counts = stateTable.getRankCounts(state);
+				long suitMasks = stateTable.getSuitMasks(state);
+				int level = 0;
+				for (int rank = 0; rank < RANKS; rank++) {
+					level += (int) (counts >>> (rank * RANK_COUNT_BITS)) & 7;
+				}
+
+				for (int card = 0; card < CARDS; card++) {
+					int rank = PlayingCard.getRankIndex(card);
+					int suit = PlayingCard.getSuitIndex(card);
+					int count = (int) (counts >>> (rank * RANK_COUNT_BITS)) & 7;
+					int suitMask = (int) (suitMasks >>> (suit * RANKS)) & SUIT_MASK;
+					if(count == SUITS || (suitMask & (1 << rank)) != 0){
+						row.putInt(0);  // the card has already been dealt
+						continue;
+					}
+
+					long nextCounts = counts + (1L << (rank * RANK_COUNT_BITS));
+					long nextSuitMasks = suitMasks;
+					if(canMakeFlush(suitMask, level)){
+						nextSuitMasks |= 1L << (suit * RANKS + rank);
+					}
+
+					if(level + 1 == HandEvaluator.HOLDEM_HAND_SIZE){
+						row.putInt(finalValue(nextCounts, nextSuitMasks, rankCounts));
+					}else{
+						nextSuitMasks = dropDeadSuits(nextSuitMasks, level + 1);
+						row.putInt(stateTable.add(nextCounts, nextSuitMasks) * CARDS);
+					}
+				}
+
+				if(!row.hasRemaining()){
+					writeFully(channel, row);
+				}
+			}
+			writeFully(channel, row);
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION).putInt(stateTable.size());
+			header.flip();
+			channel.position(0);
+			while(header.hasRemaining()){
+				channel.write(header);
+			}
+		}
+		return stateTable.size();
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining()){
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	// whether a suit with these ranks in a state with this many cards can still have 5 cards by the 7th card,
+	// up to 2 cards every suit can, after that a suit with no ranks kept has already been dropped
+	private static boolean canMakeFlush(int suitMask, int level){
+		return level <= 2 || suitMask != 0;
+	}
+
+	// forgets the ranks of suits which can't get to 5 cards with the cards still to come
+	private static long dropDeadSuits(long suitMasks, int level){
+		int cardsToCome = HandEvaluator.HOLDEM_HAND_SIZE - level;
+		for (int suit = 0; suit < SUITS; suit++) {
+			int suitMask = (int) (suitMasks >>> (suit * RANKS)) & SUIT_MASK;
+			if(Integer.bitCount(suitMask) + cardsToCome < HandEvaluator.HAND_SIZE){
+				suitMasks &= ~((long) SUIT_MASK << (suit * RANKS));
+			}
+		}
+		return suitMasks;
+	}
+
+	private static int finalValue(long counts, long suitMasks, int[] rankCounts){
+		for (int rank = 0; rank < RANKS; rank++) {
+			rankCounts[rank] = (int) (counts >>> (rank * RANK_COUNT_BITS)) & 7;
+		}
+		int flushRankMask = 0;
+		for (int suit = 0; suit < SUITS; suit++) {
+			int suitMask = (int) (suitMasks >>> (suit * RANKS)) & SUIT_MASK;
+			if(Integer.bitCount(suitMask) >= HandEvaluator.HAND_SIZE){
+				flushRankMask = suitMask;
+			}
+		}
+		return HandEvaluator.evaluate(rankCounts, flushRankMask);
+	}
+
+	// the states found so far, by number, with an open addressing hash table from a state to its number
+	private static class StateTable {
+		private long[] rankCounts = new long[1 << 16];
+		private long[] suitMasks = new long[1 << 16];
+		private int size;
+		private int[] slots = new int[1 << 17];  // state number + 1, 0 for an empty slot
+
+		int size(){
+			return size;
+		}
+
+		long getRankCounts(int state){
+			return rankCounts[state];
+		}
+
+		long getSuitMasks(int state){
+			return suitMasks[state];
+		}
+
+		// the number of the state, adding it if it hasn't been seen before
+		int add(long counts, long masks){
+			int mask = slots.length - 1;
+			int slot = hash(counts, masks) & mask;
+			while(slots[slot] != 0){
+				int state = slots[slot] - 1;
+				if(rankCounts[state] == counts && suitMasks[state] == masks){
+					return state;
+				}
+				slot = (slot + 1) & mask;
+			}
+
+			if(size == rankCounts.length){
+				rankCounts = Arrays.copyOf(rankCounts, size * 2);
+				suitMasks = Arrays.copyOf(suitMasks, size * 2);
+			}
+			rankCounts[size] = counts;
+			suitMasks[size] = masks;
+			slots[slot] = ++size;
+			if(size * 2 > slots.length){
+				rehash();
+			}
+			return size - 1;
+		}
+
+		private void rehash(){
+			slots = new int[slots.length * 2];
+			int mask = slots.length - 1;
+			for (int state = 0; state < size; state++) {
+				int slot = hash(rankCounts[state], suitMasks[state]) & mask;
+				while(slots[slot] != 0){
+					slot = (slot + 1) & mask;
+				}
+				slots[slot] = state + 1;
+			}
+		}
+
+		private static int hash(long counts, long masks){
+			long h = counts * 0x9E3779B97F4A7C15L + masks * 0xC2B2AE3D27D4EB4FL;
+			return (int) (h ^ (h >>> 29) ^ (h >>> 47));
+		}
+	}
+
+	// usage: SevenCardRankTable [file]
+	// generates the file if it doesn't exist yet, then loads it, checks it against HandEvaluator and times it
+	public static void main(String[] args) throws IOException {
+		Path file = Paths.get(args.length > 0 ? args[0] : "seven-card-ranks.bin");
+
+		if(!Files.exists(file)){
+			long startTime = System.currentTimeMillis();
+			int states = generate(file);
+			System.out.println("Generated " + file + " with " + states + " states (" + Files.size(file) / (1 << 20) + " MB) in "
+					+ (System.currentTimeMillis() - startTime) / 1000.0 + " s");
+		}
+
+		long startTime = System.nanoTime();
+		SevenCardRankTable rankTable = open(file);
+		System.out.println("Loaded in " + (System.nanoTime() - startTime) / 1000 + " us");
+
+		// random 7 card hands from shuffled decks
+		SplittableRandom random = new SplittableRandom(7);
+		DeckOfCards deck = new DeckOfCards(random);
+		int hands = 1 << 20;
+		int[] cards = new int[hands * HandEvaluator.HOLDEM_HAND_SIZE];
+		for (int hand = 0; hand < hands; hand++) {
+			deck.reset();
+			deck.shuffle();
+			deck.dealNextIds(HandEvaluator.HOLDEM_HAND_SIZE, cards, hand * HandEvaluator.HOLDEM_HAND_SIZE);
+		}
+
+		int mismatches = 0;
+		for (int i = 0; i < cards.length; i += HandEvaluator.HOLDEM_HAND_SIZE) {
+			if(rankTable.evaluate(cards[i], cards[i + 1], cards[i + 2], cards[i + 3], cards[i + 4], cards[i + 5], cards[i + 6])
+					!= HandEvaluator.evaluate(cards[i], cards[i + 1], cards[i + 2], cards[i + 3], cards[i + 4], cards[i + 5], cards[i + 6])){
+				mismatches++;
+			}
+		}
+		System.out.println(mismatches + " mismatches with HandEvaluator in " + hands + " hands");
+
+		for (int round = 0; round < 5; round++) {
+			long checksum = 0;
+			startTime = System.nanoTime();
+			for (int repeat = 0; repeat < 10; repeat++) {
+				for (int i = 0; i < cards.length; i += HandEvaluator.HOLDEM_HAND_SIZE) {
+					checksum += rankTable.evaluate(cards[i], cards[i + 1], cards[i + 2], cards[i + 3], cards[i + 4], cards[i + 5], cards[i + 6]);
+				}
+			}
+			long mapped = System.nanoTime() - startTime;
+			startTime = System.nanoTime();
+			for (int repeat = 0; repeat < 10; repeat++) {
+				for (int i = 0; i < cards.length; i += HandEvaluator.HOLDEM_HAND_SIZE) {
+					checksum -= HandEvaluator.evaluate(cards[i], cards[i + 1], cards[i + 2], cards[i + 3], cards[i + 4], cards[i + 5], cards[i + 6]);
+				}
+			}
+			long computed = System.nanoTime() - startTime;
+			System.out.println(String.format("random hands: %.1f ns per hand mapped, %.1f ns computed (checksum %d)",
+					(double) mapped / (hands * 10L), (double) computed / (hands * 10L), checksum));
+		}
+
+		// every 7 card hand in order, where the mapped table only has to follow the last card or two for most hands
+		if(rankTable.isMapped()){
+			for (int round = 0; round < 3; round++) {
+				startTime = System.nanoTime();
+				long mappedChecksum = enumerateMapped(rankTable);
+				long mapped = System.nanoTime() - startTime;
+				startTime = System.nanoTime();
+				long computedChecksum = enumerateComputed();
+				long computed = System.nanoTime() - startTime;
+				System.out.println(String.format("all 133784560 hands: %.2f s mapped, %.2f s computed (%s)", mapped / 1e9, computed / 1e9,
+						mappedChecksum == computedChecksum ? "same values" : "values differ"));
+			}
+		}
+	}
+
+	private static long enumerateMapped(SevenCardRankTable rankTable){
+		long checksum = 0;
+		for (int c0 = 0; c0 < CARDS; c0++) {
+			int p0 = rankTable.nextState(0, c0);
+			for (int c1 = c0 + 1; c1 < CARDS; c1++) {
+				int p1 = rankTable.nextState(p0, c1);
+				for (int c2 = c1 + 1; c2 < CARDS; c2++) {
+					int p2 = rankTable.nextState(p1, c2);
+					for (int c3 = c2 + 1; c3 < CARDS; c3++) {
+						int p3 = rankTable.nextState(p2, c3);
+						for (int c4 = c3 + 1; c4 < CARDS; c4++) {
+							int p4 = rankTable.nextState(p3, c4);
+							for (int c5 = c4 + 1; c5 < CARDS; c5++) {
+								int p5 = rankTable.nextState(p4, c5);
+								for (int c6 = c5 + 1; c6 < CARDS; c6++) {
+									checksum += rankTable.nextState(p5, c6);
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		return checksum;
+	}
+
+	private static long enumerateComputed(){
+		long checksum = 0;
+		for (int c0 = 0; c0 < CARDS; c0++) {
+			for (int c1 = c0 + 1; c1 < CARDS; c1++) {
+				for (int c2 = c1 + 1; c2 < CARDS; c2++) {
+					for (int c3 = c2 + 1; c3 < CARDS; c3++) {
+						for (int c4 = c3 + 1; c4 < CARDS; c4++) {
+							for (int c5 = c4 + 1; c5 < CARDS; c5++) {
+								for (int c6 = c5 + 1; c6 < CARDS; c6++) {
+									checksum += HandEvaluator.evaluate(c0, c1, c2, c3, c4, c5, c6);
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		return checksum;
+	}
+}
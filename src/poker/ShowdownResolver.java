@@ -0,0 +1,257 @@
+package poker;
+
+// Decides who wins at a showdown between any number of players, and how the pot, or the main pot and side pots
+// when players are all in for different amounts, is shared between them.
+//
+// The hands are given as card ids, either 5 cards per player for draw poker or 2 hole cards per player and a
+// board for Hold'em, and are all evaluated in one go with the primitive evaluators. A resolver keeps its results
+// in arrays it reuses, so resolving a showdown doesn't allocate anything. A resolver isn't thread safe, each
+// thread (or table) should have its own.
+//
+// After resolve(), the players still in the hand are ranked into groups of players with equal hands, best first.
+// The first group are the winners, and there is more than one player in it when the pot is split.
+public class ShowdownResolver {
+
+	public static int NO_HAND = -1;  // value of a player who has folded
+
+	private int maxPlayers;
+	private int players;
+	private int[] values;        // game value of each player's hand, NO_HAND for folded players
+	private int[] order;         // players still in the hand, best hand first
+	private int[] groupStarts;   // position in order where each group of equal hands starts, plus one past the end
+	private int numberOfGroups;
+
+	public ShowdownResolver(int maxPlayers){
+		if(maxPlayers < 1 || maxPlayers > Long.SIZE){
+			throw new IllegalArgumentException("Can resolve 1 to 64 players");
+		}
+		this.maxPlayers = maxPlayers;
+		values = new int[maxPlayers];
+		order = new int[maxPlayers];
+		groupStarts = new int[maxPlayers + 1];
+	}
+
+	// 5 card hands, player p holding cards[p * 5] to cards[p * 5 + 4], activePlayers has bit p set for each
+	// player still in the hand. Returns the number of winners
+	public int resolve(int[] cards, int players, long activePlayers){
+		checkPlayers(players);
+		for (int player = 0; player < players; player++) {
+			if((activePlayers & (1L << player)) == 0){
+				values[player] = NO_HAND;
+				continue;
+			}
+			int first = player * HandEvaluator.HAND_SIZE;
+			values[player] = HandEvaluator.evaluate(cards[first], cards[first + 1], cards[first + 2], cards[first + 3], cards[first + 4]);
+		}
+		return rank(players);
+	}
+
+	// Hold'em hands, player p holding holeCards[p * 2] and holeCards[p * 2 + 1], with 5 board cards
+	public int resolve(int[] holeCards, int[] board, int players, long activePlayers){
+		checkPlayers(players);
+		int b0 = board[0], b1 = board[1], b2 = board[2], b3 = board[3], b4 = board[4];
+		for (int player = 0; player < players; player++) {
+			if((activePlayers & (1L << player)) == 0){
+				values[player] = NO_HAND;
+				continue;
+			}
+			int first = player * EquityCalculator.HOLE_CARDS;
+			values[player] = HandEvaluator.evaluate(holeCards[first], holeCards[first + 1], b0, b1, b2, b3, b4);
+		}
+		return rank(players);
+	}
+
+	// for hands which have already been evaluated, NO_HAND for folded players
+	public int resolve(int[] gameValues, int players){
+		checkPlayers(players);
+		System.arraycopy(gameValues, 0, values, 0, players);
+		return rank(players);
+	}
+
+	private void checkPlayers(int players){
+		if(players < 1 || players > maxPlayers){
+			throw new IllegalArgumentException("Can resolve 1 to " + maxPlayers + " players, not " + players);
+		}
+	}
+
+	// sorts the players still in the hand by value, best first (an insertion sort, as there are only a few
+	// players, which keeps players with equal hands in seat order), then splits them into groups of equal hands
+	private int rank(int players){
+		this.players = players;
+		int count = 0;
+		for (int player = 0; player < players; player++) {
+			if(values[player] == NO_HAND){
+				continue;
+			}
+			int i = count - 1;
+			while(i >= 0 && values[order[i]] < values[player]){
+				order[i + 1] = order[i];
+				i--;
+			}
+			order[i + 1] = player;
+			count++;
+		}
+
+		numberOfGroups = 0;
+		for (int i = 0; i < count; i++) {
+			if(i == 0 || values[order[i]] != values[order[i - 1]]){
+				groupStarts[numberOfGroups++] = i;
+			}
+		}
+		groupStarts[numberOfGroups] = count;
+		return getNumberOfWinners();
+	}
+
+	public int getValue(int player){
+		return values[player];
+	}
+
+	public int getNumberOfWinners(){
+		return numberOfGroups == 0 ? 0 : getGroupSize(0);
+	}
+
+	// the i'th winner in seat order
+	public int getWinner(int i){
+		return order[i];
+	}
+
+	// bit p set for each player who wins (or shares) the pot
+	public long getWinnerMask(){
+		return getGroupMask(0);
+	}
+
+	// groups of players with equal hands, group 0 has the best hand
+	public int getNumberOfGroups(){
+		return numberOfGroups;
+	}
+
+	public int getGroupSize(int group){
+		return groupStarts[group + 1] - groupStarts[group];
+	}
+
+	// the i'th player of the group in seat order
+	public int getGroupMember(int group, int i){
+		return order[groupStarts[group] + i];
+	}
+
+	public long getGroupMask(int group){
+		long mask = 0;
+		if(group < numberOfGroups){
+			for (int i = groupStarts[group]; i < groupStarts[group + 1]; i++) {
+				mask |= 1L << order[i];
+			}
+		}
+		return mask;
+	}
+
+	//**************************************************************************************************
+	// Pots ********************************************************************************************
+	//**************************************************************************************************
+
+	// shares out the chips every player has put in the pot (including players who have folded) between the
+	// players still in the hand, after resolve(). The pot is split into a main pot and side pots at each amount
+	// a player is all in for, each one going to the best hands out of the players who put in at least that much.
+	// Chips which don't split evenly go to the winners in seat order, one each. The chips each player wins are
+	// written to winnings
+	public void distributePots(long[] contributions, long[] winnings){
+		for (int player = 0; player < players; player++) {
+			winnings[player] = 0;
+		}
+
+		long level = 0;
+		while(true){
+			// the next amount at which a side pot starts, the smallest contribution above the last one
+			long nextLevel = Long.MAX_VALUE;
+			for (int player = 0; player < players; player++) {
+				if(contributions[player] > level && contributions[player] < nextLevel){
+					nextLevel = contributions[player];
+				}
+			}
+			if(nextLevel == Long.MAX_VALUE){
+				break;
+			}
+
+			long pot = 0;
+			long eligible = 0;
+			for (int player = 0; player < players; player++) {
+				pot += Math.min(contributions[player], nextLevel) - Math.min(contributions[player], level);
+				if(contributions[player] >= nextLevel && values[player] != NO_HAND){
+					eligible |= 1L << player;
+				}
+			}
+			// only folded players put in this much, e.g. a raise nobody called, which goes to the best hand left
+			if(eligible == 0){
+				eligible = getGroupMask(0);
+			}
+			awardPot(pot, eligible, winnings);
+			level = nextLevel;
+		}
+	}
+
+	// gives the pot to the best group with an eligible player in it, split between its eligible players
+	private void awardPot(long pot, long eligible, long[] winnings){
+		for (int group = 0; group < numberOfGroups; group++) {
+			long winners = getGroupMask(group) & eligible;
+			if(winners == 0){
+				continue;
+			}
+			int numberOfWinners = Long.bitCount(winners);
+			long share = pot / numberOfWinners;
+			long oddChips = pot % numberOfWinners;
+			for (long mask = winners; mask != 0; mask &= mask - 1) {
+				int player = Long.numberOfTrailingZeros(mask);
+				winnings[player] += share;
+				if(oddChips > 0){
+					winnings[player]++;
+					oddChips--;
+				}
+			}
+			return;
+		}
+	}
+
+	public static void main(String[] args) {
+		ShowdownResolver resolver = new ShowdownResolver(6);
+
+		// 3 Hold'em players, the first two split with the same straight on the board, the third folded
+		int[] board = {PlayingCard.getCard("10", PlayingCard.HEARTS).getId(), PlayingCard.getCard("J", PlayingCard.CLUBS).getId(),
+				PlayingCard.getCard("Q", PlayingCard.DIAMONDS).getId(), PlayingCard.getCard("K", PlayingCard.SPADES).getId(),
+				PlayingCard.getCard("A", PlayingCard.HEARTS).getId()};
+		int[] holeCards = {PlayingCard.getCard("2", PlayingCard.HEARTS).getId(), PlayingCard.getCard("3", PlayingCard.CLUBS).getId(),
+				PlayingCard.getCard("4", PlayingCard.HEARTS).getId(), PlayingCard.getCard("5", PlayingCard.CLUBS).getId(),
+				PlayingCard.getCard("A", PlayingCard.SPADES).getId(), PlayingCard.getCard("A", PlayingCard.CLUBS).getId()};
+		int winners = resolver.resolve(holeCards, board, 3, 0b011);
+		System.out.println(winners + " winners, mask " + Long.toBinaryString(resolver.getWinnerMask()));
+
+		// 4 draw players, player 2 has the best hand but is all in for less, so player 0 wins the side pot
+		HandOfCards[] hands = {
+				new HandOfCards(new int[]{cardId("K", 'H'), cardId("K", 'D'), cardId("9", 'S'), cardId("5", 'C'), cardId("2", 'H')}),
+				new HandOfCards(new int[]{cardId("Q", 'H'), cardId("Q", 'D'), cardId("8", 'S'), cardId("5", 'D'), cardId("3", 'H')}),
+				new HandOfCards(new int[]{cardId("7", 'H'), cardId("7", 'D'), cardId("7", 'S'), cardId("4", 'C'), cardId("2", 'D')}),
+				new HandOfCards(new int[]{cardId("A", 'S'), cardId("J", 'D'), cardId("8", 'C'), cardId("6", 'C'), cardId("3", 'S')})};
+		int[] cards = new int[hands.length * HandOfCards.CARDS_PER_HAND];
+		for (int player = 0; player < hands.length; player++) {
+			for (int i = 0; i < HandOfCards.CARDS_PER_HAND; i++) {
+				cards[player * HandOfCards.CARDS_PER_HAND + i] = hands[player].getCardId(i);
+			}
+		}
+		resolver.resolve(cards, hands.length, 0b0111);  // player 3 folded
+		long[] contributions = {100, 100, 40, 20};
+		long[] winnings = new long[hands.length];
+		resolver.distributePots(contributions, winnings);
+		for (int group = 0; group < resolver.getNumberOfGroups(); group++) {
+			System.out.print("group " + group + ":");
+			for (int i = 0; i < resolver.getGroupSize(group); i++) {
+				System.out.print(" player " + resolver.getGroupMember(group, i));
+			}
+			System.out.println();
+		}
+		for (int player = 0; player < hands.length; player++) {
+			System.out.println("player " + player + " " + hands[player] + " put in " + contributions[player] + ", wins " + winnings[player]);
+		}
+	}
+
+	private static int cardId(String type, char suit){
+		return PlayingCard.getCard(type, suit).getId();
+	}
+}